@@ -0,0 +1,64 @@
+package com.kdotj.color_picker_toolbar.benchmark;
+
+import com.kdotj.color_picker_toolbar.BatchEvaluator;
+import com.kdotj.color_picker_toolbar.ColorSelection;
+import com.kdotj.color_picker_toolbar.GradientSampler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of resolving stored picks in bulk, single-threaded and split across cores
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchEvaluatorBenchmark {
+
+    private static final int PADDING = 24;
+
+    @Param({"1024", "65536", "1048576"})
+    public int batchSize;
+
+    @Param({"1", "0"})
+    public int parallelism;
+
+    private BatchEvaluator mEvaluator;
+    private float[] mX;
+    private float[] mY;
+    private int[] mOut;
+
+    @Setup
+    public void setUp() {
+        ColorSelection selection = new ColorSelection(new GradientSampler(Palettes.random(10), Palettes.WIDTH - PADDING));
+        selection.setBounds(PADDING, PADDING, Palettes.WIDTH - PADDING, Palettes.HEIGHT - PADDING);
+        selection.setMinimumAlpha(40);
+        // 0 stands for one band per core on the shared pool
+        mEvaluator = parallelism == 0 ? new BatchEvaluator(selection)
+                : new BatchEvaluator(selection, null, parallelism);
+
+        mX = new float[batchSize];
+        mY = new float[batchSize];
+        mOut = new int[batchSize];
+        Random random = new Random(42);
+        for (int i = 0; i < batchSize; i++) {
+            mX[i] = random.nextFloat() * Palettes.WIDTH;
+            mY[i] = random.nextFloat() * Palettes.HEIGHT;
+        }
+    }
+
+    @Benchmark
+    public int[] evaluate() {
+        mEvaluator.evaluate(mX, mY, mOut);
+        return mOut;
+    }
+}
@@ -0,0 +1,70 @@
+package com.kdotj.color_picker_toolbar.benchmark;
+
+import com.kdotj.color_picker_toolbar.ColorSelection;
+import com.kdotj.color_picker_toolbar.GradientSampler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a full touch resolve (clamping, alpha mapping and sampling) and of the
+ * clamping and alpha mapping alone
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ColorSelectionBenchmark {
+
+    private static final int TOUCHES = 1024;
+    private static final int PADDING = 24;
+
+    @Param({"2", "10", "100", "1000", "10000"})
+    public int paletteSize;
+
+    private ColorSelection mSelection;
+    private final float[] mX = new float[TOUCHES];
+    private final float[] mY = new float[TOUCHES];
+
+    @Setup
+    public void setUp() {
+        mSelection = new ColorSelection(new GradientSampler(Palettes.random(paletteSize), Palettes.WIDTH - PADDING));
+        mSelection.setBounds(PADDING, PADDING, Palettes.WIDTH - PADDING, Palettes.HEIGHT - PADDING);
+        mSelection.setMinimumAlpha(40);
+
+        // touches spill past every edge so each clamping branch is exercised
+        Random random = new Random(42);
+        for (int i = 0; i < TOUCHES; i++) {
+            mX[i] = random.nextFloat() * (Palettes.WIDTH + 2 * PADDING) - PADDING;
+            mY[i] = random.nextFloat() * (Palettes.HEIGHT + 2 * PADDING) - PADDING;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOUCHES)
+    public void resolve(Blackhole blackhole) {
+        for (int i = 0; i < TOUCHES; i++) {
+            blackhole.consume(mSelection.resolve(mX[i], mY[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOUCHES)
+    public void clampAndAlpha(Blackhole blackhole) {
+        for (int i = 0; i < TOUCHES; i++) {
+            blackhole.consume(mSelection.clampX(mX[i]));
+            blackhole.consume(mSelection.clampY(mY[i]));
+            blackhole.consume(mSelection.alphaFor(mY[i]));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.kdotj.color_picker_toolbar.benchmark;
+
+import com.kdotj.color_picker_toolbar.GradientSampler;
+import com.kdotj.color_picker_toolbar.InterpolationSpace;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of evaluating the gradient at one pixel column, across palette sizes and
+ * interpolation spaces
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GradientSamplerBenchmark {
+
+    @Param({"2", "10", "100", "1000", "10000"})
+    public int paletteSize;
+
+    @Param({"SRGB", "LINEAR_RGB", "HSV", "OKLAB"})
+    public InterpolationSpace space;
+
+    private GradientSampler mSampler;
+    private int[] mPalette;
+
+    @Setup
+    public void setUp() {
+        mPalette = Palettes.random(paletteSize);
+        mSampler = new GradientSampler(mPalette, Palettes.WIDTH);
+        mSampler.setInterpolationSpace(space);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Palettes.WIDTH)
+    public void sampleRow(Blackhole blackhole) {
+        for (int x = 0; x < Palettes.WIDTH; x++) {
+            blackhole.consume(mSampler.sampleAtPixel(x));
+        }
+    }
+
+    @Benchmark
+    public void setColors() {
+        mSampler.setColors(mPalette);
+    }
+}
@@ -0,0 +1,38 @@
+package com.kdotj.color_picker_toolbar.benchmark;
+
+import com.kdotj.color_picker_toolbar.PaletteParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of parsing a string array palette, as getColorsById does in edit mode
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PaletteParserBenchmark {
+
+    @Param({"2", "10", "100", "1000", "10000"})
+    public int paletteSize;
+
+    private String[] mStrings;
+
+    @Setup
+    public void setUp() {
+        mStrings = Palettes.randomStrings(paletteSize);
+    }
+
+    @Benchmark
+    public int[] parseColors() {
+        return PaletteParser.parseColors(mStrings);
+    }
+}
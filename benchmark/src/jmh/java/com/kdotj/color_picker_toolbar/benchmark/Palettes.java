@@ -0,0 +1,35 @@
+package com.kdotj.color_picker_toolbar.benchmark;
+
+import java.util.Random;
+
+/**
+ * Deterministic palettes shared by the benchmarks
+ */
+final class Palettes {
+
+    /**
+     * Toolbar width in pixels, about a 1080p phone in portrait
+     */
+    static final int WIDTH = 1080;
+    static final int HEIGHT = 168;
+
+    static int[] random(int size) {
+        Random random = new Random(size);
+        int[] colors = new int[size];
+        for (int i = 0; i < size; i++) {
+            colors[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return colors;
+    }
+
+    static String[] randomStrings(int size) {
+        int[] colors = random(size);
+        String[] strings = new String[size];
+        for (int i = 0; i < size; i++) {
+            strings[i] = String.format("#%08X", colors[i]);
+        }
+        return strings;
+    }
+
+    private Palettes() {}
+}
@@ -0,0 +1,171 @@
+package com.kdotj.color_picker_toolbar;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves many stored picks at once, off the device: given the positions the
+ * user touched and the palette the Toolbar showed, reproduces the colors the
+ * Toolbar reported, e.g. to re-render thumbnails or validate selections on a server.
+ * <p>
+ * Each position is resolved exactly like {@link ColorSelection#resolve(float, float)}:
+ * clamped into the toolbar bounds, its row mapped to alpha, its column sampled from
+ * the gradient and, if set, snapped to the nearest swatch. The bounds, minimum alpha,
+ * sampler and swatch index are read from a template selection when the evaluator is
+ * created; the sampler must not be changed afterwards.
+ * <p>
+ * Batches of at least {@link #PARALLEL_THRESHOLD} positions are split in bands across
+ * the Executor, with the calling thread taking a band too; smaller ones run on the
+ * calling thread alone. Results are written into a caller-provided array, so an
+ * evaluation allocates nothing. {@link #evaluate(float[], float[], int[], int, int)}
+ * blocks until done; never call it from a thread of the Executor it runs on.
+ */
+
+public class BatchEvaluator {
+
+    /**
+     * Smallest batch worth splitting across threads
+     */
+    public static final int PARALLEL_THRESHOLD = 8192;
+
+    private final Executor mExecutor;
+    private final Band[] mBands;
+    private final AtomicInteger mRemaining = new AtomicInteger();
+    private final Object mDone = new Object();
+
+    /**
+     * The batch being read by the bands during a run
+     */
+    private float[] mX;
+    private float[] mY;
+    private int[] mOut;
+
+    /**
+     * Creates an evaluator running on a shared pool with one thread per core
+     *
+     * @param template selection whose bounds, minimum alpha, sampler and swatch index are used
+     */
+    public BatchEvaluator(ColorSelection template) {
+        this(template, TintEngine.getDefaultExecutor(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param template    selection whose bounds, minimum alpha, sampler and swatch index are used
+     * @param executor    Executor the bands run on
+     * @param parallelism number of bands, including the one run by the calling thread
+     */
+    public BatchEvaluator(ColorSelection template, Executor executor, int parallelism) {
+        mExecutor = executor;
+        mBands = new Band[Math.max(1, parallelism)];
+        for (int i = 0; i < mBands.length; i++) {
+            mBands[i] = new Band(copy(template));
+        }
+    }
+
+    /**
+     * Resolves every position of a batch
+     *
+     * @param x   touch x of each pick, in view coordinates
+     * @param y   touch y of each pick, in view coordinates
+     * @param out receives the ARGB color of each pick
+     */
+    public void evaluate(float[] x, float[] y, int[] out) {
+        evaluate(x, y, out, 0, x.length);
+    }
+
+    /**
+     * Resolves a range of positions
+     *
+     * @param x      touch x of each pick, in view coordinates
+     * @param y      touch y of each pick, in view coordinates
+     * @param out    receives the ARGB color of pick i at index i
+     * @param offset first pick resolved
+     * @param count  number of picks resolved
+     */
+    public synchronized void evaluate(float[] x, float[] y, int[] out, int offset, int count) {
+        int end = offset + count;
+        if (offset < 0 || count < 0 || end > x.length || end > y.length || end > out.length) {
+            throw new IllegalArgumentException("Range " + offset + "+" + count + " is outside of the batch");
+        }
+        if (count == 0) {
+            return;
+        }
+        mX = x;
+        mY = y;
+        mOut = out;
+
+        int bands = count < PARALLEL_THRESHOLD ? 1 : mBands.length;
+        for (int i = 0; i < bands; i++) {
+            mBands[i].set(offset + (int) ((long) count * i / bands), offset + (int) ((long) count * (i + 1) / bands));
+        }
+        mRemaining.set(bands);
+        for (int i = 1; i < bands; i++) {
+            mExecutor.execute(mBands[i]);
+        }
+        mBands[0].run();
+        synchronized (mDone) {
+            while (mRemaining.get() > 0) {
+                try {
+                    mDone.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while evaluating a batch", e);
+                }
+            }
+        }
+        mX = null;
+        mY = null;
+        mOut = null;
+    }
+
+    /**
+     * Copies the settings of a selection; swatch indexes keep per-query state, so
+     * each copy gets its own view of the shared tree
+     */
+    private static ColorSelection copy(ColorSelection template) {
+        ColorSelection selection = new ColorSelection(template.getSampler());
+        selection.setBounds(template.getLeft(), template.getTop(), template.getRight(), template.getBottom());
+        selection.setMinimumAlpha(template.getMinimumAlpha());
+        if (template.getSwatchIndex() != null) {
+            selection.setSwatchIndex(new SwatchIndex(template.getSwatchIndex()));
+        }
+        return selection;
+    }
+
+    /**
+     * Resolves a range of the batch with its own selection
+     */
+    private final class Band implements Runnable {
+
+        final ColorSelection mSelection;
+        int mFrom;
+        int mTo;
+
+        Band(ColorSelection selection) {
+            mSelection = selection;
+        }
+
+        void set(int from, int to) {
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        public void run() {
+            try {
+                float[] x = mX;
+                float[] y = mY;
+                int[] out = mOut;
+                for (int i = mFrom; i < mTo; i++) {
+                    out[i] = mSelection.peek(x[i], y[i]);
+                }
+            } finally {
+                if (mRemaining.decrementAndGet() == 0) {
+                    synchronized (mDone) {
+                        mDone.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+}
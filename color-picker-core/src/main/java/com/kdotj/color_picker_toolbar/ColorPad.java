@@ -0,0 +1,150 @@
+package com.kdotj.color_picker_toolbar;
+
+/**
+ * The 2D pad shown under the Toolbar strip: a square of variations of the color
+ * picked on the strip.
+ * <p>
+ * In {@link Mode#SATURATION_VALUE} the pad spans the strip color's hue, with
+ * saturation growing to the right and value falling towards the bottom. In
+ * {@link Mode#LIGHTNESS} it spans the strip color's OKLab hue and chroma, with chroma
+ * growing to the right up to the strip color's own and lightness falling towards
+ * the bottom. Pad positions are fractions, 0 at the left and top edges.
+ * <p>
+ * Only the part of the strip color the pad depends on is kept, the anchor: the hue,
+ * or the OKLab a and b. Strip colors with the same anchor, e.g. differing only in
+ * value or alpha, produce the same pad, which is what {@link #equals(Object)} compares.
+ */
+
+public class ColorPad {
+
+    public enum Mode {
+        SATURATION_VALUE,
+        LIGHTNESS
+    }
+
+    private Mode mMode = Mode.SATURATION_VALUE;
+
+    /**
+     * The hue, or the OKLab a and b of the strip color
+     */
+    private float mAnchor0;
+    private float mAnchor1;
+
+    private final float[] mConverted = new float[3];
+
+    /**
+     * Anchors the pad on a strip color
+     *
+     * @param mode  how the pad varies the color
+     * @param color ARGB strip color; alpha is ignored
+     * @return true if the pad changed
+     */
+    public boolean set(Mode mode, int color) {
+        float anchor0;
+        float anchor1;
+        if (mode == Mode.SATURATION_VALUE) {
+            ColorSpaces.toHsv(color, mConverted);
+            anchor0 = mConverted[0];
+            anchor1 = 0f;
+        } else {
+            ColorSpaces.toOkLab(color, mConverted);
+            anchor0 = mConverted[1];
+            anchor1 = mConverted[2];
+        }
+        if (mode == mMode && anchor0 == mAnchor0 && anchor1 == mAnchor1) {
+            return false;
+        }
+        mMode = mode;
+        mAnchor0 = anchor0;
+        mAnchor1 = anchor1;
+        return true;
+    }
+
+    public void set(ColorPad pad) {
+        mMode = pad.mMode;
+        mAnchor0 = pad.mAnchor0;
+        mAnchor1 = pad.mAnchor1;
+    }
+
+    public Mode getMode() {
+        return mMode;
+    }
+
+    /**
+     * @param u horizontal fraction, 0 at the left edge
+     * @param v vertical fraction, 0 at the top edge
+     * @return opaque color at that pad position
+     */
+    public int colorAt(float u, float v) {
+        if (mMode == Mode.SATURATION_VALUE) {
+            return 0xFF000000 | ColorSpaces.hsvToRgb(mAnchor0, u, 1f - v);
+        }
+        return 0xFF000000 | ColorSpaces.okLabToRgb(1f - v, mAnchor0 * u, mAnchor1 * u);
+    }
+
+    /**
+     * Finds where a color sits on the pad, the reverse of {@link #colorAt(float, float)}
+     * for colors on the pad
+     *
+     * @param color ARGB color; alpha is ignored
+     * @param out   receives u and v in the first two entries
+     */
+    public void locate(int color, float[] out) {
+        if (mMode == Mode.SATURATION_VALUE) {
+            ColorSpaces.toHsv(color, mConverted);
+            out[0] = mConverted[1];
+            out[1] = 1f - mConverted[2];
+        } else {
+            ColorSpaces.toOkLab(color, mConverted);
+            float chroma = mAnchor0 * mAnchor0 + mAnchor1 * mAnchor1;
+            // project onto the pad's chroma axis
+            float u = chroma > 0f ? (mConverted[1] * mAnchor0 + mConverted[2] * mAnchor1) / chroma : 0f;
+            out[0] = Math.min(Math.max(u, 0f), 1f);
+            out[1] = Math.min(Math.max(1f - mConverted[0], 0f), 1f);
+        }
+    }
+
+    /**
+     * Fills a run of one pad row
+     *
+     * @param out    destination for the colors
+     * @param offset first index written in {@code out}
+     * @param startX first pixel column
+     * @param count  number of columns
+     * @param y      pixel row
+     * @param width  pad width in pixels
+     * @param height pad height in pixels
+     */
+    public void fillRow(int[] out, int offset, int startX, int count, int y, int width, int height) {
+        float v = fraction(y, height);
+        for (int i = 0; i < count; i++) {
+            out[offset + i] = colorAt(fraction(startX + i, width), v);
+        }
+    }
+
+    /**
+     * Maps a pixel to its center as a fraction of the pad, the way it is rendered
+     */
+    public static float fraction(int pixel, int size) {
+        return size > 0 ? (pixel + 0.5f) / size : 0f;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ColorPad)) {
+            return false;
+        }
+        ColorPad pad = (ColorPad) o;
+        return mMode == pad.mMode && mAnchor0 == pad.mAnchor0 && mAnchor1 == pad.mAnchor1;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mMode.hashCode();
+        result = 31 * result + Float.floatToIntBits(mAnchor0);
+        return 31 * result + Float.floatToIntBits(mAnchor1);
+    }
+}
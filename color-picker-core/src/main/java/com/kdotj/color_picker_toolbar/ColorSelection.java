@@ -0,0 +1,295 @@
+package com.kdotj.color_picker_toolbar;
+
+/**
+ * Touch-to-color resolution for the Toolbar: clamps a touch position into the
+ * toolbar bounds, maps the vertical axis to alpha and samples the gradient.
+ * When the sampler is discrete, the stop under the touch is reported as is.
+ * <p>
+ * Holds only primitives so resolving a touch never allocates.
+ */
+
+public class ColorSelection {
+
+    private static final int MAX_ALPHA = 255;
+
+    private GradientSampler mSampler;
+    private SwatchIndex mSwatchIndex;
+
+    private int mLeft;
+    private int mTop;
+    private int mRight;
+    private int mBottom;
+
+    private int mMinimumAlpha;
+
+    private float mIndicatorX;
+    private float mIndicatorY;
+    private float mAlpha = MAX_ALPHA;
+    private int mColor;
+    private int mStopIndex = -1;
+    private float mFraction = -1f;
+
+    public ColorSelection(GradientSampler sampler) {
+        mSampler = sampler;
+    }
+
+    /**
+     * Switches to another gradient, e.g. once a new palette has been compiled
+     */
+    public void setSampler(GradientSampler sampler) {
+        mSampler = sampler;
+    }
+
+    public GradientSampler getSampler() {
+        return mSampler;
+    }
+
+    /**
+     * Snaps every resolved color to the nearest swatch of an index, keeping the resolved alpha
+     *
+     * @param swatchIndex index to snap to, or null to return the raw gradient color
+     */
+    public void setSwatchIndex(SwatchIndex swatchIndex) {
+        mSwatchIndex = swatchIndex;
+    }
+
+    public SwatchIndex getSwatchIndex() {
+        return mSwatchIndex;
+    }
+
+    /**
+     * Sets the toolbar bounds touches are clamped to
+     */
+    public void setBounds(int left, int top, int right, int bottom) {
+        mLeft = left;
+        mTop = top;
+        mRight = right;
+        mBottom = bottom;
+    }
+
+    public int getLeft() {
+        return mLeft;
+    }
+
+    public int getTop() {
+        return mTop;
+    }
+
+    public int getRight() {
+        return mRight;
+    }
+
+    public int getBottom() {
+        return mBottom;
+    }
+
+    public void setMinimumAlpha(int minimumAlpha) {
+        mMinimumAlpha = minimumAlpha;
+    }
+
+    public int getMinimumAlpha() {
+        return mMinimumAlpha;
+    }
+
+    /**
+     * Moves the indicator to a touch position and resolves the color under it
+     *
+     * @param x touch x in view coordinates
+     * @param y touch y in view coordinates
+     * @return the resolved ARGB color
+     */
+    public int resolve(float x, float y) {
+        mIndicatorY = clampY(y);
+        mAlpha = alphaFor(y);
+        mIndicatorX = clampX(x);
+        mFraction = -1f;
+
+        mStopIndex = mSampler.isDiscrete() ? mSampler.stopIndexAtPixel((int) mIndicatorX) : -1;
+        mColor = colorAt((int) mIndicatorX, (int) mAlpha);
+        return mColor;
+    }
+
+    /**
+     * Resolves the color at a touch position without moving the indicator or
+     * changing the selected color, e.g. for a predicted position
+     *
+     * @param x touch x in view coordinates
+     * @param y touch y in view coordinates
+     * @return the ARGB color {@link #resolve(float, float)} would return
+     */
+    public int peek(float x, float y) {
+        return colorAt((int) clampX(x), (int) alphaFor(y));
+    }
+
+    /**
+     * Resolves the color under the indicator again, keeping its position and alpha,
+     * e.g. while the gradient changes under it
+     *
+     * @return the resolved ARGB color
+     */
+    public int refresh() {
+        mStopIndex = mSampler.isDiscrete() ? mSampler.stopIndexAtPixel((int) mIndicatorX) : -1;
+        mColor = colorAt((int) mIndicatorX, (int) mAlpha);
+        return mColor;
+    }
+
+    private int colorAt(int pixelX, int alpha) {
+        if (mSampler.isDiscrete()) {
+            int index = mSampler.stopIndexAtPixel(pixelX);
+            return index >= 0 ? mSampler.getColor(index) : 0;
+        }
+        int color = mSampler.sampleAtPixel(pixelX);
+        if (mSwatchIndex != null) {
+            color = mSwatchIndex.nearest(color);
+        }
+        return withAlpha(color, alpha);
+    }
+
+    /**
+     * Moves the indicator to where a color sits, the reverse of {@link #resolve(float, float)}
+     *
+     * @param color    ARGB color to select; its alpha positions the indicator vertically
+     * @param fraction position of the color along the gradient, e.g. from {@link GradientLocator}
+     */
+    public void place(int color, float fraction) {
+        int alpha = color >>> 24;
+        mFraction = fraction;
+        mIndicatorX = clampX(mSampler.positionOf(fraction));
+        mIndicatorY = yFor(alpha);
+        mAlpha = alpha;
+        mColor = color;
+    }
+
+    /**
+     * Moves the indicator to a fraction of the gradient and resolves the color there
+     * from the stops alone, so it works before the toolbar is laid out
+     *
+     * @param fraction position along the gradient, in [0, 1]
+     * @param alpha    alpha of the selected color, which positions the indicator vertically
+     * @return the resolved ARGB color
+     */
+    public int select(float fraction, int alpha) {
+        mFraction = fraction;
+        mIndicatorX = clampX(mSampler.positionOf(fraction));
+        mIndicatorY = yFor(alpha);
+        mAlpha = alpha;
+
+        if (mSampler.isDiscrete()) {
+            mStopIndex = mSampler.getSegments().indexAt(fraction);
+            mColor = mSampler.getColor(mStopIndex);
+        } else {
+            mStopIndex = -1;
+            int color = mSampler.sampleFraction(fraction);
+            if (mSwatchIndex != null) {
+                color = mSwatchIndex.nearest(color);
+            }
+            mColor = withAlpha(color, alpha);
+        }
+        return mColor;
+    }
+
+    /**
+     * @return gradient fraction the color was placed at by {@link #place(int, float)} or
+     * {@link #select(float, int)}, or -1 if the indicator was last moved by a touch
+     */
+    public float getFraction() {
+        return mFraction;
+    }
+
+    /**
+     * Inverse of {@link #alphaFor(float)}: the row whose alpha is closest to the given one
+     */
+    public float yFor(int alpha) {
+        if (alpha <= mMinimumAlpha) {
+            return mTop;
+        }
+        return clampY(alpha);
+    }
+
+    /**
+     * Clamps x into the toolbar, keeping it on the last pixel column at the right edge
+     */
+    public float clampX(float x) {
+        if (x <= mLeft) {
+            return mLeft;
+        } else if (x < mRight) {
+            return x;
+        } else {
+            return mRight - 1;
+        }
+    }
+
+    /**
+     * Clamps y into the toolbar, keeping it on the last pixel row at the bottom edge
+     */
+    public float clampY(float y) {
+        if (y <= mTop) {
+            return mTop;
+        } else if (y < mBottom) {
+            return y;
+        } else {
+            return mBottom - 1;
+        }
+    }
+
+    /**
+     * Maps a vertical touch position to alpha: the minimum at the top edge, opaque
+     * at the bottom and the raw pixel row in between
+     */
+    public float alphaFor(float y) {
+        if (y <= mTop) {
+            return mMinimumAlpha;
+        } else if (y < mBottom) {
+            return Math.min(Math.max(y, mMinimumAlpha), MAX_ALPHA);
+        } else {
+            return MAX_ALPHA;
+        }
+    }
+
+    public void setIndicatorX(float indicatorX) {
+        mIndicatorX = indicatorX;
+    }
+
+    public float getIndicatorX() {
+        return mIndicatorX;
+    }
+
+    public void setIndicatorY(float indicatorY) {
+        mIndicatorY = indicatorY;
+    }
+
+    public float getIndicatorY() {
+        return mIndicatorY;
+    }
+
+    public void setAlpha(float alpha) {
+        mAlpha = alpha;
+    }
+
+    public float getAlpha() {
+        return mAlpha;
+    }
+
+    public void setColor(int color) {
+        mColor = color;
+    }
+
+    public int getColor() {
+        return mColor;
+    }
+
+    /**
+     * @return stop under the indicator as of the last {@link #resolve(float, float)},
+     * or -1 if the sampler was not discrete
+     */
+    public int getStopIndex() {
+        return mStopIndex;
+    }
+
+    /**
+     * Replaces the alpha channel of a color
+     */
+    public static int withAlpha(int color, int alpha) {
+        return (alpha << 24) | (color & 0x00FFFFFF);
+    }
+}
@@ -0,0 +1,227 @@
+package com.kdotj.color_picker_toolbar;
+
+/**
+ * Conversions between sRGB and the spaces of {@link InterpolationSpace}.
+ * <p>
+ * The transfer function and the cube root go through fixed-point lookup tables
+ * built once at class load, so converting a color is table lookups and
+ * multiply-adds with no calls to {@code Math.pow} or {@code Math.cbrt}.
+ */
+
+public final class ColorSpaces {
+
+    /**
+     * Linear channels are 16-bit fixed point: 0 is black, {@link #LINEAR_ONE} full intensity
+     */
+    public static final int LINEAR_ONE = 65535;
+
+    private static final int LINEAR_TO_SRGB_BITS = 12;
+    private static final int LINEAR_TO_SRGB_SHIFT = 16 - LINEAR_TO_SRGB_BITS;
+    private static final int LINEAR_TO_SRGB_FRACTION = (1 << LINEAR_TO_SRGB_SHIFT) - 1;
+
+    private static final int CBRT_SIZE = 4096;
+
+    /**
+     * sRGB byte to linear 16-bit
+     */
+    private static final int[] SRGB_TO_LINEAR = new int[256];
+
+    /**
+     * Linear value (top 12 bits) to sRGB in 8.8 fixed point, interpolated between entries
+     */
+    private static final int[] LINEAR_TO_SRGB = new int[(1 << LINEAR_TO_SRGB_BITS) + 1];
+
+    /**
+     * Cube root of i / CBRT_SIZE, the starting point for one Newton step
+     */
+    private static final float[] CBRT = new float[CBRT_SIZE + 1];
+
+    static {
+        for (int i = 0; i < SRGB_TO_LINEAR.length; i++) {
+            double c = i / 255d;
+            double linear = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+            SRGB_TO_LINEAR[i] = (int) Math.round(linear * LINEAR_ONE);
+        }
+        for (int i = 0; i < LINEAR_TO_SRGB.length; i++) {
+            double linear = Math.min(1d, (double) (i << LINEAR_TO_SRGB_SHIFT) / LINEAR_ONE);
+            double c = linear <= 0.0031308 ? linear * 12.92 : 1.055 * Math.pow(linear, 1 / 2.4) - 0.055;
+            LINEAR_TO_SRGB[i] = (int) Math.round(c * 255 * 256);
+        }
+        for (int i = 0; i <= CBRT_SIZE; i++) {
+            CBRT[i] = (float) Math.cbrt((double) i / CBRT_SIZE);
+        }
+    }
+
+    /**
+     * @param channel sRGB channel, 0-255
+     * @return linear channel, 0-{@link #LINEAR_ONE}
+     */
+    public static int srgbToLinear(int channel) {
+        return SRGB_TO_LINEAR[channel];
+    }
+
+    /**
+     * @param linear linear channel, clamped to 0-{@link #LINEAR_ONE}
+     * @return sRGB channel, 0-255
+     */
+    public static int linearToSrgb(int linear) {
+        if (linear <= 0) {
+            return 0;
+        }
+        if (linear >= LINEAR_ONE) {
+            return 255;
+        }
+        int index = linear >> LINEAR_TO_SRGB_SHIFT;
+        int fraction = linear & LINEAR_TO_SRGB_FRACTION;
+        int low = LINEAR_TO_SRGB[index];
+        int high = LINEAR_TO_SRGB[index + 1];
+        int value = low + (((high - low) * fraction) >> LINEAR_TO_SRGB_SHIFT);
+        return (value + 128) >> 8;
+    }
+
+    /**
+     * Cube root for values in [0, 1]: a table lookup refined by one Newton step.
+     * Small values are scaled up by powers of 8 first, where the table is too coarse.
+     */
+    public static float cbrt(float x) {
+        if (x <= 0f) {
+            return 0f;
+        }
+        if (x >= 1f) {
+            return 1f;
+        }
+        float scale = 1f;
+        while (x < 0.125f) {
+            x *= 8f;
+            scale *= 0.5f;
+        }
+        float y = CBRT[(int) (x * CBRT_SIZE + 0.5f)];
+        return scale * (y - (y * y * y - x) / (3f * y * y));
+    }
+
+    /**
+     * Converts an ARGB color to OKLab
+     *
+     * @param color ARGB color, alpha is ignored
+     * @param out   receives L, a and b in the first three entries
+     */
+    public static void toOkLab(int color, float[] out) {
+        float r = srgbToLinear((color >> 16) & 0xFF) / (float) LINEAR_ONE;
+        float g = srgbToLinear((color >> 8) & 0xFF) / (float) LINEAR_ONE;
+        float b = srgbToLinear(color & 0xFF) / (float) LINEAR_ONE;
+
+        float l = cbrt(0.4122214708f * r + 0.5363325363f * g + 0.0514459929f * b);
+        float m = cbrt(0.2119034982f * r + 0.6806995451f * g + 0.1073969566f * b);
+        float s = cbrt(0.0883024619f * r + 0.2817188376f * g + 0.6299787005f * b);
+
+        out[0] = 0.2104542553f * l + 0.7936177850f * m - 0.0040720468f * s;
+        out[1] = 1.9779984951f * l - 2.4285922050f * m + 0.4505937099f * s;
+        out[2] = 0.0259040371f * l + 0.7827717662f * m - 0.8086757660f * s;
+    }
+
+    /**
+     * Converts OKLab back to an RGB color, clipping out of gamut values
+     *
+     * @return RGB color with alpha bits cleared
+     */
+    public static int okLabToRgb(float lightness, float a, float b) {
+        float l = lightness + 0.3963377774f * a + 0.2158037573f * b;
+        float m = lightness - 0.1055613458f * a - 0.0638541728f * b;
+        float s = lightness - 0.0894841775f * a - 1.2914855480f * b;
+        l = l * l * l;
+        m = m * m * m;
+        s = s * s * s;
+
+        float red = 4.0767416621f * l - 3.3077115913f * m + 0.2309699292f * s;
+        float green = -1.2684380046f * l + 2.6097574011f * m - 0.3413193965f * s;
+        float blue = -0.0041960863f * l - 0.7034186147f * m + 1.7076147010f * s;
+
+        return (linearToSrgb((int) (red * LINEAR_ONE + 0.5f)) << 16)
+                | (linearToSrgb((int) (green * LINEAR_ONE + 0.5f)) << 8)
+                | linearToSrgb((int) (blue * LINEAR_ONE + 0.5f));
+    }
+
+    /**
+     * Converts an ARGB color to HSV
+     *
+     * @param color ARGB color, alpha is ignored
+     * @param out   receives hue in [0, 360), saturation and value in [0, 1]
+     */
+    public static void toHsv(int color, float[] out) {
+        int r = (color >> 16) & 0xFF;
+        int g = (color >> 8) & 0xFF;
+        int b = color & 0xFF;
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        int delta = max - min;
+
+        float hue;
+        if (delta == 0) {
+            hue = 0f;
+        } else if (max == r) {
+            hue = 60f * (g - b) / delta;
+        } else if (max == g) {
+            hue = 60f * (b - r) / delta + 120f;
+        } else {
+            hue = 60f * (r - g) / delta + 240f;
+        }
+        if (hue < 0f) {
+            hue += 360f;
+        }
+
+        out[0] = hue;
+        out[1] = max == 0 ? 0f : (float) delta / max;
+        out[2] = max / 255f;
+    }
+
+    /**
+     * Converts HSV to an RGB color
+     *
+     * @return RGB color with alpha bits cleared
+     */
+    public static int hsvToRgb(float hue, float saturation, float value) {
+        hue = hue % 360f;
+        if (hue < 0f) {
+            hue += 360f;
+        }
+        float sector = hue / 60f;
+        int i = (int) sector;
+        float f = sector - i;
+        float v = value * 255f;
+        float p = v * (1f - saturation);
+        float q = v * (1f - saturation * f);
+        float t = v * (1f - saturation * (1f - f));
+
+        float r;
+        float g;
+        float b;
+        switch (i) {
+            case 0:
+                r = v; g = t; b = p;
+                break;
+            case 1:
+                r = q; g = v; b = p;
+                break;
+            case 2:
+                r = p; g = v; b = t;
+                break;
+            case 3:
+                r = p; g = q; b = v;
+                break;
+            case 4:
+                r = t; g = p; b = v;
+                break;
+            default:
+                r = v; g = p; b = q;
+                break;
+        }
+        return (toByte(r) << 16) | (toByte(g) << 8) | toByte(b);
+    }
+
+    private static int toByte(float channel) {
+        int value = (int) (channel + 0.5f);
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    private ColorSpaces() {}
+}
@@ -0,0 +1,317 @@
+package com.kdotj.color_picker_toolbar;
+
+/**
+ * Inverse of {@link GradientSampler}: finds where along the gradient a color is,
+ * so a stored color can put the indicator back where it was picked.
+ * <p>
+ * Each segment between two stops is treated as a straight line in OKLab, with its
+ * start, direction and inverse squared length precomputed. Segments are grouped in
+ * a bounding volume hierarchy laid out in flat arrays, so a lookup only projects the
+ * color onto the few segments whose boxes could hold a closer point, O(log n) for
+ * typical palettes. Straight lines are exact for {@link InterpolationSpace#OKLAB};
+ * for the other spaces the position is refined on the sampler's own curve.
+ * <p>
+ * A discrete sampler maps the color to the nearest stop and returns the middle of its segment.
+ * <p>
+ * Lookups reuse scratch state, so a locator must only be used from one thread at a time.
+ */
+
+public class GradientLocator {
+
+    /**
+     * Segments per leaf, projected one after another
+     */
+    private static final int LEAF_SIZE = 4;
+
+    /**
+     * Golden section steps refining a position on a curved segment, to about 1/2000 of it
+     */
+    private static final int REFINE_STEPS = 16;
+    private static final float GOLDEN = 0.618034f;
+
+    private final GradientSampler mSampler;
+    private final int mCount;
+    private final StopSegments mSegments;
+    private final SwatchIndex mStops;
+
+    private final float[] mStartL;
+    private final float[] mStartA;
+    private final float[] mStartB;
+    private final float[] mDirL;
+    private final float[] mDirA;
+    private final float[] mDirB;
+    private final float[] mInvLengthSquared;
+
+    /**
+     * Segment indices in tree order, and per-node bounding boxes with heap numbering
+     */
+    private final int[] mOrder;
+    private final float[] mBoxMin;
+    private final float[] mBoxMax;
+
+    private final float[] mQuery = new float[3];
+    private final float[] mScratch = new float[3];
+    private float mProjection;
+    private int mBestSegment;
+    private float mBestProjection;
+    private float mBestDistance;
+
+    /**
+     * Builds a locator for the sampler's current stops, segments and interpolation space
+     */
+    public GradientLocator(GradientSampler sampler) {
+        mSampler = sampler;
+        mCount = sampler.getColorCount();
+        mSegments = sampler.getSegments();
+
+        int[] colors = new int[mCount];
+        for (int i = 0; i < mCount; i++) {
+            colors[i] = sampler.getColor(i);
+        }
+        mStops = mSegments != null && mCount > 0 ? new SwatchIndex(colors) : null;
+
+        int segmentCount = mSegments == null ? Math.max(mCount - 1, 0) : 0;
+        mStartL = new float[mCount];
+        mStartA = new float[mCount];
+        mStartB = new float[mCount];
+        mDirL = new float[segmentCount];
+        mDirA = new float[segmentCount];
+        mDirB = new float[segmentCount];
+        mInvLengthSquared = new float[segmentCount];
+
+        for (int i = 0; i < mCount; i++) {
+            ColorSpaces.toOkLab(colors[i], mQuery);
+            mStartL[i] = mQuery[0];
+            mStartA[i] = mQuery[1];
+            mStartB[i] = mQuery[2];
+        }
+        for (int i = 0; i < segmentCount; i++) {
+            mDirL[i] = mStartL[i + 1] - mStartL[i];
+            mDirA[i] = mStartA[i + 1] - mStartA[i];
+            mDirB[i] = mStartB[i + 1] - mStartB[i];
+            float lengthSquared = mDirL[i] * mDirL[i] + mDirA[i] * mDirA[i] + mDirB[i] * mDirB[i];
+            // identical neighbouring stops: every point of the segment is the start
+            mInvLengthSquared[i] = lengthSquared > 0f ? 1f / lengthSquared : 0f;
+        }
+
+        mOrder = new int[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            mOrder[i] = i;
+        }
+        int nodes = 1;
+        while (nodes < 2 * segmentCount) {
+            nodes <<= 1;
+        }
+        mBoxMin = new float[3 * nodes];
+        mBoxMax = new float[3 * nodes];
+        if (segmentCount > 0) {
+            build(0, 0, segmentCount, new float[segmentCount]);
+        }
+    }
+
+    /**
+     * Finds the gradient position whose color is closest to the given one
+     *
+     * @param color ARGB color; alpha is ignored
+     * @return fraction of the gradient length in [0, 1]; the middle of the
+     * stop's segment when the sampler is discrete
+     */
+    public float locate(int color) {
+        if (mCount <= 1) {
+            return 0f;
+        }
+        if (mSegments != null) {
+            int stop = mStops.nearestIndex(color);
+            return (mSegments.startOf(stop) + mSegments.endOf(stop)) / 2f;
+        }
+
+        ColorSpaces.toOkLab(color, mQuery);
+        mBestDistance = Float.MAX_VALUE;
+        search(0, 0, mOrder.length);
+
+        float u = mBestProjection;
+        if (mSampler.getInterpolationSpace() != InterpolationSpace.OKLAB) {
+            u = refine(mBestSegment);
+        }
+        return (mBestSegment + u) / (mCount - 1);
+    }
+
+    private void search(int node, int from, int to) {
+        if (boxDistance(node) >= mBestDistance) {
+            return;
+        }
+        if (to - from <= LEAF_SIZE) {
+            for (int i = from; i < to; i++) {
+                int segment = mOrder[i];
+                float distance = project(segment);
+                // ties go to the earliest segment, so the leftmost occurrence of a color wins
+                if (distance < mBestDistance || (distance == mBestDistance && segment < mBestSegment)) {
+                    mBestDistance = distance;
+                    mBestSegment = segment;
+                    mBestProjection = mProjection;
+                }
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        int left = 2 * node + 1;
+        int right = left + 1;
+        if (boxDistance(left) <= boxDistance(right)) {
+            search(left, from, mid);
+            search(right, mid, to);
+        } else {
+            search(right, mid, to);
+            search(left, from, mid);
+        }
+    }
+
+    /**
+     * Projects the query onto a segment, leaving the clamped position along it in mProjection
+     *
+     * @return squared distance from the query to the projected point
+     */
+    private float project(int segment) {
+        float l = mQuery[0] - mStartL[segment];
+        float a = mQuery[1] - mStartA[segment];
+        float b = mQuery[2] - mStartB[segment];
+        float u = (l * mDirL[segment] + a * mDirA[segment] + b * mDirB[segment]) * mInvLengthSquared[segment];
+        u = u < 0f ? 0f : (u > 1f ? 1f : u);
+        mProjection = u;
+
+        l -= u * mDirL[segment];
+        a -= u * mDirA[segment];
+        b -= u * mDirB[segment];
+        return l * l + a * a + b * b;
+    }
+
+    /**
+     * Squared distance from the query to a node's bounding box, 0 inside it
+     */
+    private float boxDistance(int node) {
+        float distance = 0f;
+        for (int axis = 0; axis < 3; axis++) {
+            float value = mQuery[axis];
+            float min = mBoxMin[3 * node + axis];
+            float max = mBoxMax[3 * node + axis];
+            float d = value < min ? min - value : (value > max ? value - max : 0f);
+            distance += d * d;
+        }
+        return distance;
+    }
+
+    /**
+     * Golden section search along the sampler's curve for a segment blended outside of OKLab
+     *
+     * @return position along the segment in [0, 1]
+     */
+    private float refine(int segment) {
+        float low = 0f;
+        float high = 1f;
+        float x1 = high - GOLDEN * (high - low);
+        float x2 = low + GOLDEN * (high - low);
+        float d1 = curveDistance(segment, x1);
+        float d2 = curveDistance(segment, x2);
+        for (int i = 0; i < REFINE_STEPS; i++) {
+            if (d1 <= d2) {
+                high = x2;
+                x2 = x1;
+                d2 = d1;
+                x1 = high - GOLDEN * (high - low);
+                d1 = curveDistance(segment, x1);
+            } else {
+                low = x1;
+                x1 = x2;
+                d1 = d2;
+                x2 = low + GOLDEN * (high - low);
+                d2 = curveDistance(segment, x2);
+            }
+        }
+        return (low + high) / 2f;
+    }
+
+    private float curveDistance(int segment, float u) {
+        ColorSpaces.toOkLab(mSampler.sampleFraction((segment + u) / (mCount - 1)), mScratch);
+        float l = mScratch[0] - mQuery[0];
+        float a = mScratch[1] - mQuery[1];
+        float b = mScratch[2] - mQuery[2];
+        return l * l + a * a + b * b;
+    }
+
+    /**
+     * Computes the box of order[from, to), then splits it at the median segment
+     * midpoint along its widest axis and recurses into both halves
+     */
+    private void build(int node, int from, int to, float[] key) {
+        int base = 3 * node;
+        for (int axis = 0; axis < 3; axis++) {
+            mBoxMin[base + axis] = Float.MAX_VALUE;
+            mBoxMax[base + axis] = -Float.MAX_VALUE;
+        }
+        for (int i = from; i < to; i++) {
+            int segment = mOrder[i];
+            include(base, segment);
+            include(base, segment + 1);
+        }
+        if (to - from <= LEAF_SIZE) {
+            return;
+        }
+
+        int widest = 0;
+        for (int axis = 1; axis < 3; axis++) {
+            if (mBoxMax[base + axis] - mBoxMin[base + axis] > mBoxMax[base + widest] - mBoxMin[base + widest]) {
+                widest = axis;
+            }
+        }
+        for (int i = from; i < to; i++) {
+            int segment = mOrder[i];
+            key[segment] = (stopValue(segment, widest) + stopValue(segment + 1, widest)) / 2f;
+        }
+        int mid = (from + to) >>> 1;
+        select(mOrder, key, from, to - 1, mid);
+        build(2 * node + 1, from, mid, key);
+        build(2 * node + 2, mid, to, key);
+    }
+
+    private void include(int base, int stop) {
+        for (int axis = 0; axis < 3; axis++) {
+            float value = stopValue(stop, axis);
+            mBoxMin[base + axis] = Math.min(mBoxMin[base + axis], value);
+            mBoxMax[base + axis] = Math.max(mBoxMax[base + axis], value);
+        }
+    }
+
+    private float stopValue(int stop, int axis) {
+        return axis == 0 ? mStartL[stop] : (axis == 1 ? mStartA[stop] : mStartB[stop]);
+    }
+
+    /**
+     * Quickselect: places the k-th smallest of order[left, right] by key at k
+     */
+    private static void select(int[] order, float[] key, int left, int right, int k) {
+        while (left < right) {
+            int pivotIndex = (left + right) >>> 1;
+            float pivot = key[order[pivotIndex]];
+            swap(order, pivotIndex, right);
+            int store = left;
+            for (int i = left; i < right; i++) {
+                if (key[order[i]] < pivot) {
+                    swap(order, i, store++);
+                }
+            }
+            swap(order, store, right);
+            if (store == k) {
+                return;
+            } else if (store < k) {
+                left = store + 1;
+            } else {
+                right = store - 1;
+            }
+        }
+    }
+
+    private static void swap(int[] values, int i, int j) {
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
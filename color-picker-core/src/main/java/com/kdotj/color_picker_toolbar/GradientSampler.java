@@ -0,0 +1,366 @@
+package com.kdotj.color_picker_toolbar;
+
+/**
+ * Evaluates the Toolbar gradient directly from its color stops, so the selected
+ * color can be resolved without reading back rendered pixels.
+ * <p>
+ * Matches a horizontal {@code LinearGradient} with evenly spaced stops running
+ * from x = origin (0 unless set) to x = length, tiled outside of that range like
+ * {@code Shader.TileMode}.
+ * {@code ColorPickerToolbar} uses {@link TileMode#MIRROR}.
+ * <p>
+ * Stops are blended in the sampler's {@link InterpolationSpace}; the Toolbar renders
+ * its gradient from this class too, so what is drawn and what is picked always agree.
+ * With {@link StopSegments} set, the gradient is instead drawn as one solid block per stop.
+ */
+
+public class GradientSampler {
+
+    /**
+     * How positions outside of [0, length] are folded back onto the gradient
+     */
+    public enum TileMode {
+        CLAMP,
+        REPEAT,
+        MIRROR
+    }
+
+    private int mCount;
+    private float mOrigin;
+    private float mLength;
+    private TileMode mTileMode = TileMode.MIRROR;
+    private InterpolationSpace mSpace = InterpolationSpace.SRGB;
+    private StopSegments mSegments;
+
+    private int[] mColors = new int[0];
+    private int[] mAlpha = new int[0];
+    private int[] mRed = new int[0];
+    private int[] mGreen = new int[0];
+    private int[] mBlue = new int[0];
+
+    /**
+     * Stops converted to the interpolation space, when it is not sRGB
+     */
+    private float[] mC0 = new float[0];
+    private float[] mC1 = new float[0];
+    private float[] mC2 = new float[0];
+    private final float[] mConverted = new float[3];
+
+    public GradientSampler() {
+    }
+
+    public GradientSampler(int[] colors, float length) {
+        setColors(colors);
+        setLength(length);
+    }
+
+    /**
+     * Sets the color stops, converted into the interpolation space once so sampling is only arithmetic
+     *
+     * @param colors ARGB color stops, evenly spaced across the gradient
+     */
+    public void setColors(int[] colors) {
+        int count = colors == null ? 0 : colors.length;
+        if (mColors.length != count) {
+            mColors = new int[count];
+            mAlpha = new int[count];
+            mRed = new int[count];
+            mGreen = new int[count];
+            mBlue = new int[count];
+            mC0 = new float[count];
+            mC1 = new float[count];
+            mC2 = new float[count];
+        }
+        for (int i = 0; i < count; i++) {
+            int color = colors[i];
+            mColors[i] = color;
+            mAlpha[i] = color >>> 24;
+            mRed[i] = (color >> 16) & 0xFF;
+            mGreen[i] = (color >> 8) & 0xFF;
+            mBlue[i] = color & 0xFF;
+        }
+        mCount = count;
+        if (mSegments != null && mSegments.getCount() != count) {
+            mSegments = count > 0 ? new StopSegments(count) : null;
+        }
+        convertStops();
+    }
+
+    /**
+     * Switches between a continuous gradient and solid segments, one per stop
+     *
+     * @param segments segment layout, with one segment per color stop, or null to blend the stops
+     */
+    public void setSegments(StopSegments segments) {
+        if (segments != null && segments.getCount() != mCount) {
+            throw new IllegalArgumentException("Expected " + mCount + " segments, got " + segments.getCount());
+        }
+        mSegments = segments;
+    }
+
+    public StopSegments getSegments() {
+        return mSegments;
+    }
+
+    public boolean isDiscrete() {
+        return mSegments != null;
+    }
+
+    /**
+     * @return color stop at an index, as passed to {@link #setColors(int[])}
+     */
+    public int getColor(int index) {
+        return mColors[index];
+    }
+
+    /**
+     * Sets the space the stops are blended in
+     */
+    public void setInterpolationSpace(InterpolationSpace space) {
+        if (mSpace != space) {
+            mSpace = space;
+            convertStops();
+        }
+    }
+
+    public InterpolationSpace getInterpolationSpace() {
+        return mSpace;
+    }
+
+    private void convertStops() {
+        for (int i = 0; i < mCount; i++) {
+            switch (mSpace) {
+                case LINEAR_RGB:
+                    mC0[i] = ColorSpaces.srgbToLinear(mRed[i]);
+                    mC1[i] = ColorSpaces.srgbToLinear(mGreen[i]);
+                    mC2[i] = ColorSpaces.srgbToLinear(mBlue[i]);
+                    break;
+                case HSV:
+                    ColorSpaces.toHsv(mColors[i], mConverted);
+                    mC0[i] = mConverted[0];
+                    mC1[i] = mConverted[1];
+                    mC2[i] = mConverted[2];
+                    break;
+                case OKLAB:
+                    ColorSpaces.toOkLab(mColors[i], mConverted);
+                    mC0[i] = mConverted[0];
+                    mC1[i] = mConverted[1];
+                    mC2[i] = mConverted[2];
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    public int getColorCount() {
+        return mCount;
+    }
+
+    /**
+     * Sets the distance in pixels over which the stops are spread before mirroring
+     *
+     * @param length gradient length, the end point of the {@code LinearGradient}
+     */
+    public void setLength(float length) {
+        mLength = length;
+    }
+
+    public float getLength() {
+        return mLength;
+    }
+
+    /**
+     * Sets where the first stop sits, e.g. the left edge of the strip for segments
+     *
+     * @param origin gradient start, the start point of the {@code LinearGradient}
+     */
+    public void setOrigin(float origin) {
+        mOrigin = origin;
+    }
+
+    public float getOrigin() {
+        return mOrigin;
+    }
+
+    /**
+     * @param x position in view coordinates
+     * @return fraction of the gradient at that position, before tiling, or 0 if it has no extent
+     */
+    public float fractionAt(float x) {
+        return mLength > mOrigin ? (x - mOrigin) / (mLength - mOrigin) : 0f;
+    }
+
+    /**
+     * Inverse of {@link #fractionAt(float)}
+     *
+     * @param fraction fraction of the gradient
+     * @return position in view coordinates
+     */
+    public float positionOf(float fraction) {
+        return mOrigin + fraction * (mLength - mOrigin);
+    }
+
+    public void setTileMode(TileMode tileMode) {
+        mTileMode = tileMode;
+    }
+
+    public TileMode getTileMode() {
+        return mTileMode;
+    }
+
+    /**
+     * Samples the color the gradient renders into the given pixel column
+     *
+     * @param pixelX pixel column, sampled at its center like the rasterizer does
+     * @return ARGB color at that column
+     */
+    public int sampleAtPixel(int pixelX) {
+        return sample(pixelX + 0.5f);
+    }
+
+    /**
+     * Finds the segment the given pixel column falls in
+     *
+     * @param pixelX pixel column, sampled at its center
+     * @return stop index, or -1 if the sampler is not discrete or has no stops
+     */
+    public int stopIndexAtPixel(int pixelX) {
+        if (mSegments == null || mCount == 0) {
+            return -1;
+        }
+        if (mCount == 1 || mLength <= mOrigin) {
+            return 0;
+        }
+        return mSegments.indexAt(tile(fractionAt(pixelX + 0.5f)));
+    }
+
+    /**
+     * Samples a run of consecutive pixel columns, e.g. to render the gradient into a bitmap row
+     *
+     * @param out    destination for the ARGB colors
+     * @param offset first index written in {@code out}
+     * @param startX first pixel column sampled
+     * @param count  number of columns
+     */
+    public void fillRow(int[] out, int offset, int startX, int count) {
+        for (int i = 0; i < count; i++) {
+            out[offset + i] = sampleAtPixel(startX + i);
+        }
+    }
+
+    /**
+     * Samples the gradient at an arbitrary horizontal position
+     *
+     * @param x position in view coordinates
+     * @return ARGB color at that position
+     */
+    public int sample(float x) {
+        if (mCount == 0) {
+            return 0;
+        }
+        if (mCount == 1 || mLength <= mOrigin) {
+            return mColors[0];
+        }
+        return sampleFraction(tile(fractionAt(x)));
+    }
+
+    /**
+     * Samples the gradient at a fraction of its length
+     *
+     * @param t fraction in [0, 1], where 0 is the first stop and 1 the last
+     * @return ARGB color at that fraction
+     */
+    public int sampleFraction(float t) {
+        if (mCount == 0) {
+            return 0;
+        }
+        int last = mCount - 1;
+        if (last == 0 || t <= 0f) {
+            return mColors[0];
+        }
+        if (t >= 1f) {
+            return mColors[last];
+        }
+        if (mSegments != null) {
+            return mColors[mSegments.indexAt(t)];
+        }
+
+        float scaled = t * last;
+        int i = (int) scaled;
+        if (i >= last) {
+            i = last - 1;
+        }
+        float f = scaled - i;
+
+        int a = lerp(mAlpha[i], mAlpha[i + 1], f);
+        return (a << 24) | blend(i, f);
+    }
+
+    /**
+     * Blends stop i with stop i + 1 in the interpolation space
+     *
+     * @return RGB color with alpha bits cleared
+     */
+    private int blend(int i, float f) {
+        switch (mSpace) {
+            case LINEAR_RGB:
+                return (ColorSpaces.linearToSrgb((int) (mC0[i] + (mC0[i + 1] - mC0[i]) * f + 0.5f)) << 16)
+                        | (ColorSpaces.linearToSrgb((int) (mC1[i] + (mC1[i + 1] - mC1[i]) * f + 0.5f)) << 8)
+                        | ColorSpaces.linearToSrgb((int) (mC2[i] + (mC2[i + 1] - mC2[i]) * f + 0.5f));
+            case HSV:
+                return ColorSpaces.hsvToRgb(lerpHue(i, f),
+                        mC1[i] + (mC1[i + 1] - mC1[i]) * f,
+                        mC2[i] + (mC2[i + 1] - mC2[i]) * f);
+            case OKLAB:
+                return ColorSpaces.okLabToRgb(mC0[i] + (mC0[i + 1] - mC0[i]) * f,
+                        mC1[i] + (mC1[i + 1] - mC1[i]) * f,
+                        mC2[i] + (mC2[i + 1] - mC2[i]) * f);
+            default:
+                return (lerp(mRed[i], mRed[i + 1], f) << 16)
+                        | (lerp(mGreen[i], mGreen[i + 1], f) << 8)
+                        | lerp(mBlue[i], mBlue[i + 1], f);
+        }
+    }
+
+    /**
+     * Blends hues the short way around the circle; a grey stop takes the other stop's hue
+     */
+    private float lerpHue(int i, float f) {
+        float from = mC1[i] == 0f ? mC0[i + 1] : mC0[i];
+        float to = mC1[i + 1] == 0f ? from : mC0[i + 1];
+        float delta = to - from;
+        if (delta > 180f) {
+            delta -= 360f;
+        } else if (delta < -180f) {
+            delta += 360f;
+        }
+        return from + delta * f;
+    }
+
+    private float tile(float t) {
+        switch (mTileMode) {
+            case CLAMP:
+                return t;
+            case REPEAT:
+                return t - (float) Math.floor(t);
+            default:
+                return mirror(t);
+        }
+    }
+
+    /**
+     * Folds a gradient fraction back into [0, 1] the way {@code TileMode.MIRROR} does
+     */
+    static float mirror(float t) {
+        if (t < 0f) {
+            t = -t;
+        }
+        t = t % 2f;
+        return t > 1f ? 2f - t : t;
+    }
+
+    private static int lerp(int from, int to, float f) {
+        return (int) (from + (to - from) * f + 0.5f);
+    }
+}
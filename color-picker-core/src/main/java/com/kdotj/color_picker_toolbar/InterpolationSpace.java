@@ -0,0 +1,24 @@
+package com.kdotj.color_picker_toolbar;
+
+/**
+ * Color space the Toolbar gradient blends its stops in
+ */
+
+public enum InterpolationSpace {
+    /**
+     * Gamma-encoded sRGB channels, what {@code LinearGradient} does
+     */
+    SRGB,
+    /**
+     * Linear-light RGB, physically correct mixing without the dark band between hues
+     */
+    LINEAR_RGB,
+    /**
+     * Hue, saturation and value, taking the shorter way around the hue circle
+     */
+    HSV,
+    /**
+     * OKLab, perceptually uniform lightness and chroma
+     */
+    OKLAB
+}
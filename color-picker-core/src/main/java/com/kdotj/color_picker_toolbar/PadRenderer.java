@@ -0,0 +1,229 @@
+package com.kdotj.color_picker_toolbar;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Renders a {@link ColorPad} into square tiles of ARGB pixels on a background
+ * Executor, so moving along the strip never renders the pad on the UI thread.
+ * <p>
+ * Each tile remembers the pad and size it was rendered for and is only rendered
+ * again when those change: strip colors that share the pad's anchor, such as
+ * alpha-only changes, re-render nothing. A pass renders stale tiles one by one and
+ * restarts as soon as a newer pad is set, so a fast drag only finishes the latest
+ * pad. Tile buffers are allocated when the pad grows and reused afterwards.
+ * <p>
+ * The listener is told about every finished tile on the rendering thread; its pixels
+ * are then copied out with {@link #readTile(int, int, int[], int)}. {@link #stop()}
+ * ends rendering until the pad is anchored again.
+ */
+
+public class PadRenderer {
+
+    public static final int TILE_SIZE = 64;
+
+    public interface Listener {
+        /**
+         * Called on the rendering thread whenever a tile has new pixels
+         */
+        void onTileRendered(int column, int row);
+    }
+
+    private final Executor mExecutor;
+    private final Listener mListener;
+
+    /**
+     * The pad and size the tiles should show; guarded by this
+     */
+    private final ColorPad mRequested = new ColorPad();
+    private boolean mHasPad;
+    private int mWidth;
+    private int mHeight;
+    private int mColumns;
+    private int mRows;
+    private Tile[] mTiles = new Tile[0];
+    private boolean mRunning;
+
+    /**
+     * Incremented whenever the requested pad or size changes, read by a running pass
+     */
+    private volatile int mGeneration;
+
+    /**
+     * Copy of the requested pad a pass renders, owned by the rendering thread
+     */
+    private final ColorPad mRendering = new ColorPad();
+
+    private final Runnable mPass = new Runnable() {
+        @Override
+        public void run() {
+            renderPasses();
+        }
+    };
+
+    /**
+     * Creates a renderer running on a shared pool with one thread per core
+     */
+    public PadRenderer(Listener listener) {
+        this(TintEngine.getDefaultExecutor(), listener);
+    }
+
+    public PadRenderer(Executor executor, Listener listener) {
+        mExecutor = executor;
+        mListener = listener;
+    }
+
+    /**
+     * Sets the pad size, keeping the tiles it already has
+     */
+    public synchronized void setSize(int width, int height) {
+        if (width == mWidth && height == mHeight) {
+            return;
+        }
+        mWidth = Math.max(0, width);
+        mHeight = Math.max(0, height);
+        mColumns = (mWidth + TILE_SIZE - 1) / TILE_SIZE;
+        mRows = (mHeight + TILE_SIZE - 1) / TILE_SIZE;
+        int count = mColumns * mRows;
+        if (count > mTiles.length) {
+            Tile[] tiles = new Tile[count];
+            System.arraycopy(mTiles, 0, tiles, 0, mTiles.length);
+            for (int i = mTiles.length; i < count; i++) {
+                tiles[i] = new Tile();
+            }
+            mTiles = tiles;
+        }
+        mGeneration++;
+        schedule();
+    }
+
+    /**
+     * Anchors the pad on a strip color, rendering it in the background if it changed
+     *
+     * @param mode  how the pad varies the color
+     * @param color ARGB strip color
+     */
+    public synchronized void setColor(ColorPad.Mode mode, int color) {
+        if (mRequested.set(mode, color) || !mHasPad) {
+            mHasPad = true;
+            mGeneration++;
+            schedule();
+        }
+    }
+
+    /**
+     * Abandons the pass in progress after its current tile and renders nothing more until
+     * the next {@link #setColor(ColorPad.Mode, int)}, which picks up where it left off
+     */
+    public synchronized void stop() {
+        mHasPad = false;
+        mGeneration++;
+    }
+
+    public synchronized int getColumns() {
+        return mColumns;
+    }
+
+    public synchronized int getRows() {
+        return mRows;
+    }
+
+    /**
+     * Copies the pixels of a tile if they changed since a known version
+     *
+     * @param column  tile column
+     * @param row     tile row
+     * @param out     receives the tile, {@link #TILE_SIZE} pixels per row
+     * @param version version last read, or -1 to always copy
+     * @return the version of the tile; {@code out} is left untouched if it equals {@code version}
+     */
+    public int readTile(int column, int row, int[] out, int version) {
+        Tile tile;
+        synchronized (this) {
+            if (column >= mColumns || row >= mRows) {
+                return version;
+            }
+            tile = mTiles[row * mColumns + column];
+        }
+        synchronized (tile) {
+            if (tile.mVersion != version) {
+                System.arraycopy(tile.mPixels, 0, out, 0, TILE_SIZE * TILE_SIZE);
+            }
+            return tile.mVersion;
+        }
+    }
+
+    private void schedule() {
+        if (!mRunning && mHasPad && mWidth > 0 && mHeight > 0) {
+            mRunning = true;
+            mExecutor.execute(mPass);
+        }
+    }
+
+    /**
+     * Renders stale tiles until a pass completes with no newer pad or size set meanwhile
+     */
+    private void renderPasses() {
+        while (true) {
+            int generation;
+            int width;
+            int height;
+            int columns;
+            Tile[] tiles;
+            int count;
+            synchronized (this) {
+                generation = mGeneration;
+                mRendering.set(mRequested);
+                width = mWidth;
+                height = mHeight;
+                columns = mColumns;
+                count = mColumns * mRows;
+                tiles = mTiles;
+            }
+
+            for (int i = 0; i < count && generation == mGeneration; i++) {
+                Tile tile = tiles[i];
+                if (tile.isCurrent(mRendering, width, height)) {
+                    continue;
+                }
+                int column = i % columns;
+                int row = i / columns;
+                synchronized (tile) {
+                    tile.render(mRendering, column * TILE_SIZE, row * TILE_SIZE, width, height);
+                }
+                mListener.onTileRendered(column, row);
+            }
+
+            synchronized (this) {
+                if (generation == mGeneration || !mHasPad) {
+                    mRunning = false;
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final class Tile {
+
+        final int[] mPixels = new int[TILE_SIZE * TILE_SIZE];
+        final ColorPad mPad = new ColorPad();
+        int mPadWidth;
+        int mPadHeight;
+        int mVersion;
+
+        boolean isCurrent(ColorPad pad, int width, int height) {
+            return mVersion > 0 && mPadWidth == width && mPadHeight == height && mPad.equals(pad);
+        }
+
+        void render(ColorPad pad, int left, int top, int width, int height) {
+            int columns = Math.min(TILE_SIZE, width - left);
+            int rows = Math.min(TILE_SIZE, height - top);
+            for (int y = 0; y < rows; y++) {
+                pad.fillRow(mPixels, y * TILE_SIZE, left, columns, top + y, width, height);
+            }
+            mPad.set(pad);
+            mPadWidth = width;
+            mPadHeight = height;
+            mVersion++;
+        }
+    }
+}
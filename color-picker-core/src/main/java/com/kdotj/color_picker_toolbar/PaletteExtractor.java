@@ -0,0 +1,392 @@
+package com.kdotj.color_picker_toolbar;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reduces an image to a few representative colors, e.g. to build the Toolbar
+ * gradient from the picture being edited.
+ * <p>
+ * Pixels are counted into a 15-bit color histogram (5 bits per channel), split in
+ * bands of rows that run in parallel, each band into its own histogram, with the
+ * calling thread taking a band too. The merged histogram is then divided by median
+ * cut: boxes are split at their population median along their longest side, by
+ * population first and by population times volume for the last quarter of the
+ * splits, so large uniform areas do not crowd out small vivid ones. Each box
+ * yields its population-weighted mean color.
+ * <p>
+ * Histograms and boxes are allocated once and reused. For very large images a
+ * sampling stride trades accuracy for speed: a stride of 4 reads one pixel in 16.
+ * <p>
+ * {@link #extract(int[], int, int, int)} blocks until done; call it off the main
+ * thread, and never from a thread of the Executor it runs on.
+ */
+
+public class PaletteExtractor {
+
+    private static final int BITS = 5;
+    private static final int SIDE = 1 << BITS;
+    private static final int BINS = SIDE * SIDE * SIDE;
+    private static final int SHIFT = 8 - BITS;
+
+    /**
+     * Pixels more transparent than this are left out
+     */
+    private static final int MIN_ALPHA = 128;
+
+    /**
+     * Share of splits made by population alone, the rest weigh in the box volume
+     */
+    private static final float POPULATION_SPLITS = 0.75f;
+
+    private final Executor mExecutor;
+    private final Band[] mBands;
+    private final AtomicInteger mRemaining = new AtomicInteger();
+    private final Object mDone = new Object();
+
+    private int mStride = 1;
+
+    private final int[] mHistogram = new int[BINS];
+    private final int[] mSlices = new int[SIDE];
+
+    /**
+     * Boxes as [rMin, rMax, gMin, gMax, bMin, bMax] in histogram units, with their populations
+     */
+    private int[] mBoxes = new int[0];
+    private long[] mPopulations = new long[0];
+    private int mBoxCount;
+
+    /**
+     * The image being read by the bands during a run
+     */
+    private int[] mPixels;
+    private int mWidth;
+
+    /**
+     * Creates an extractor running on the shared pool with one thread per core
+     */
+    public PaletteExtractor() {
+        this(TintEngine.getDefaultExecutor(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param executor    Executor the bands run on
+     * @param parallelism number of bands, including the one run by the calling thread
+     */
+    public PaletteExtractor(Executor executor, int parallelism) {
+        mExecutor = executor;
+        mBands = new Band[Math.max(1, parallelism)];
+        for (int i = 0; i < mBands.length; i++) {
+            mBands[i] = new Band();
+        }
+    }
+
+    /**
+     * Reads only every stride-th pixel of every stride-th row, for fast previews
+     *
+     * @param stride 1 to read every pixel
+     */
+    public synchronized void setStride(int stride) {
+        if (stride < 1) {
+            throw new IllegalArgumentException("Stride must be at least 1");
+        }
+        mStride = stride;
+    }
+
+    public synchronized int getStride() {
+        return mStride;
+    }
+
+    /**
+     * Finds the representative colors of an image
+     *
+     * @param pixels     ARGB pixels, row by row
+     * @param colorCount most colors to return
+     * @return opaque colors ordered from dark to light, ready for
+     * {@code ColorPickerToolbar.setColors(int[])}; fewer than requested if the image
+     * has fewer distinct colors, and none if it is fully transparent
+     */
+    public synchronized int[] extract(int[] pixels, int width, int height, int colorCount) {
+        if (width <= 0 || height <= 0 || pixels == null || pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixels must hold " + width + "x" + height + " pixels");
+        }
+        if (colorCount < 1) {
+            throw new IllegalArgumentException("Color count must be at least 1");
+        }
+        buildHistogram(pixels, width, height);
+        medianCut(colorCount);
+        return boxColors();
+    }
+
+    private void buildHistogram(int[] pixels, int width, int height) {
+        mPixels = pixels;
+        mWidth = width;
+        int rows = (height + mStride - 1) / mStride;
+        int bands = Math.min(mBands.length, rows);
+        for (int i = 0; i < bands; i++) {
+            mBands[i].set(rows * i / bands * mStride, rows * (i + 1) / bands * mStride);
+        }
+
+        mRemaining.set(bands);
+        for (int i = 1; i < bands; i++) {
+            mExecutor.execute(mBands[i]);
+        }
+        mBands[0].run();
+        synchronized (mDone) {
+            while (mRemaining.get() > 0) {
+                try {
+                    mDone.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while extracting a palette", e);
+                }
+            }
+        }
+        mPixels = null;
+
+        System.arraycopy(mBands[0].mHistogram, 0, mHistogram, 0, BINS);
+        for (int i = 1; i < bands; i++) {
+            int[] histogram = mBands[i].mHistogram;
+            for (int bin = 0; bin < BINS; bin++) {
+                mHistogram[bin] += histogram[bin];
+            }
+        }
+    }
+
+    private void medianCut(int colorCount) {
+        if (mPopulations.length < colorCount) {
+            mBoxes = new int[colorCount * 6];
+            mPopulations = new long[colorCount];
+        }
+        addBox(0, 0, SIDE - 1, 0, SIDE - 1, 0, SIDE - 1);
+        mBoxCount = 1;
+        if (mPopulations[0] == 0) {
+            mBoxCount = 0;
+            return;
+        }
+
+        int populationSplits = Math.max(1, (int) (colorCount * POPULATION_SPLITS));
+        while (mBoxCount < colorCount) {
+            int box = pickBox(mBoxCount >= populationSplits);
+            if (box < 0) {
+                break;
+            }
+            split(box);
+        }
+    }
+
+    /**
+     * @return the splittable box with the largest priority, or -1 if none can be split
+     */
+    private int pickBox(boolean byVolume) {
+        int best = -1;
+        double bestPriority = 0;
+        for (int i = 0; i < mBoxCount; i++) {
+            int base = i * 6;
+            long volume = (long) (mBoxes[base + 1] - mBoxes[base] + 1)
+                    * (mBoxes[base + 3] - mBoxes[base + 2] + 1)
+                    * (mBoxes[base + 5] - mBoxes[base + 4] + 1);
+            if (volume <= 1 || mPopulations[i] < 2) {
+                continue;
+            }
+            double priority = byVolume ? (double) mPopulations[i] * volume : mPopulations[i];
+            if (priority > bestPriority) {
+                bestPriority = priority;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Splits a box at the population median of its longest side into itself and a new box.
+     * Boxes are shrunk to their populated bins, so both ends of that side hold pixels and
+     * neither half comes out empty.
+     */
+    private void split(int box) {
+        int base = box * 6;
+        int axis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (mBoxes[base + 2 * a + 1] - mBoxes[base + 2 * a] > mBoxes[base + 2 * axis + 1] - mBoxes[base + 2 * axis]) {
+                axis = a;
+            }
+        }
+        int min = mBoxes[base + 2 * axis];
+        int max = mBoxes[base + 2 * axis + 1];
+
+        Arrays.fill(mSlices, 0);
+        for (int r = mBoxes[base]; r <= mBoxes[base + 1]; r++) {
+            for (int g = mBoxes[base + 2]; g <= mBoxes[base + 3]; g++) {
+                for (int b = mBoxes[base + 4]; b <= mBoxes[base + 5]; b++) {
+                    int count = mHistogram[(r << (2 * BITS)) | (g << BITS) | b];
+                    mSlices[axis == 0 ? r : (axis == 1 ? g : b)] += count;
+                }
+            }
+        }
+
+        long half = mPopulations[box] / 2;
+        long running = 0;
+        int cut = min;
+        for (int slice = min; slice < max; slice++) {
+            running += mSlices[slice];
+            cut = slice;
+            if (running >= half) {
+                break;
+            }
+        }
+
+        // the upper half is appended, then the box itself shrinks to the lower half
+        int upperMin = cut + 1;
+        int[] boxes = mBoxes;
+        int count = mBoxCount;
+        addBox(count,
+                axis == 0 ? upperMin : boxes[base], boxes[base + 1],
+                axis == 1 ? upperMin : boxes[base + 2], boxes[base + 3],
+                axis == 2 ? upperMin : boxes[base + 4], boxes[base + 5]);
+        addBox(box,
+                boxes[base], axis == 0 ? cut : boxes[base + 1],
+                boxes[base + 2], axis == 1 ? cut : boxes[base + 3],
+                boxes[base + 4], axis == 2 ? cut : boxes[base + 5]);
+        mBoxCount = count + 1;
+    }
+
+    /**
+     * Stores a box at an index, shrunk to the bins it actually populates
+     */
+    private void addBox(int index, int rMin, int rMax, int gMin, int gMax, int bMin, int bMax) {
+        int r0 = SIDE;
+        int r1 = -1;
+        int g0 = SIDE;
+        int g1 = -1;
+        int b0 = SIDE;
+        int b1 = -1;
+        long population = 0;
+        for (int r = rMin; r <= rMax; r++) {
+            for (int g = gMin; g <= gMax; g++) {
+                for (int b = bMin; b <= bMax; b++) {
+                    int count = mHistogram[(r << (2 * BITS)) | (g << BITS) | b];
+                    if (count == 0) {
+                        continue;
+                    }
+                    population += count;
+                    r0 = Math.min(r0, r);
+                    r1 = Math.max(r1, r);
+                    g0 = Math.min(g0, g);
+                    g1 = Math.max(g1, g);
+                    b0 = Math.min(b0, b);
+                    b1 = Math.max(b1, b);
+                }
+            }
+        }
+        int base = index * 6;
+        if (population == 0) {
+            r0 = rMin;
+            r1 = rMax;
+            g0 = gMin;
+            g1 = gMax;
+            b0 = bMin;
+            b1 = bMax;
+        }
+        mBoxes[base] = r0;
+        mBoxes[base + 1] = r1;
+        mBoxes[base + 2] = g0;
+        mBoxes[base + 3] = g1;
+        mBoxes[base + 4] = b0;
+        mBoxes[base + 5] = b1;
+        mPopulations[index] = population;
+    }
+
+    private int[] boxColors() {
+        int[] colors = new int[mBoxCount];
+        float[] lightness = new float[mBoxCount];
+        float[] lab = new float[3];
+        for (int i = 0; i < mBoxCount; i++) {
+            int base = i * 6;
+            long sumR = 0;
+            long sumG = 0;
+            long sumB = 0;
+            for (int r = mBoxes[base]; r <= mBoxes[base + 1]; r++) {
+                for (int g = mBoxes[base + 2]; g <= mBoxes[base + 3]; g++) {
+                    for (int b = mBoxes[base + 4]; b <= mBoxes[base + 5]; b++) {
+                        long count = mHistogram[(r << (2 * BITS)) | (g << BITS) | b];
+                        sumR += count * r;
+                        sumG += count * g;
+                        sumB += count * b;
+                    }
+                }
+            }
+            long population = mPopulations[i];
+            // bin centers: a bin covers 2^SHIFT values of each channel
+            colors[i] = 0xFF000000
+                    | (channel(sumR, population) << 16)
+                    | (channel(sumG, population) << 8)
+                    | channel(sumB, population);
+            ColorSpaces.toOkLab(colors[i], lab);
+            lightness[i] = lab[0];
+        }
+
+        // insertion sort by lightness: a handful of colors, and no boxing
+        for (int i = 1; i < colors.length; i++) {
+            int color = colors[i];
+            float l = lightness[i];
+            int j = i - 1;
+            while (j >= 0 && lightness[j] > l) {
+                colors[j + 1] = colors[j];
+                lightness[j + 1] = lightness[j];
+                j--;
+            }
+            colors[j + 1] = color;
+            lightness[j + 1] = l;
+        }
+        return colors;
+    }
+
+    private static int channel(long sum, long population) {
+        int value = (int) (((sum << SHIFT) + (population << SHIFT) / 2) / population);
+        return Math.min(255, value);
+    }
+
+    /**
+     * Counts the pixels of a range of rows into its own histogram
+     */
+    private final class Band implements Runnable {
+
+        final int[] mHistogram = new int[BINS];
+        int mStartRow;
+        int mEndRow;
+
+        void set(int startRow, int endRow) {
+            mStartRow = startRow;
+            mEndRow = endRow;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Arrays.fill(mHistogram, 0);
+                int[] pixels = mPixels;
+                int width = mWidth;
+                int stride = mStride;
+                for (int row = mStartRow; row < mEndRow; row += stride) {
+                    int end = row * width + width;
+                    for (int i = row * width; i < end; i += stride) {
+                        int p = pixels[i];
+                        if ((p >>> 24) < MIN_ALPHA) {
+                            continue;
+                        }
+                        mHistogram[((p >> (16 + SHIFT)) & (SIDE - 1)) << (2 * BITS)
+                                | ((p >> (8 + SHIFT)) & (SIDE - 1)) << BITS
+                                | ((p >> SHIFT) & (SIDE - 1))]++;
+                    }
+                }
+            } finally {
+                if (mRemaining.decrementAndGet() == 0) {
+                    synchronized (mDone) {
+                        mDone.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+}
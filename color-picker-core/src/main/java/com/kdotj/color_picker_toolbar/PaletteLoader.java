@@ -0,0 +1,555 @@
+package com.kdotj.color_picker_toolbar;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads palettes from external files straight into an {@code int[]} of ARGB
+ * colors, for {@code ColorPickerToolbar.setColors(int[])}.
+ * <p>
+ * Supported formats, detected from the content:
+ * <ul>
+ * <li>GIMP palettes ({@code .gpl}): {@code R G B name} lines</li>
+ * <li>Adobe Swatch Exchange ({@code .ase}): RGB, CMYK, LAB and Gray swatches</li>
+ * <li>Hex lists: {@code #RRGGBB}, {@code #AARRGGBB}, {@code #RGB}, {@code #ARGB},
+ * {@code 0x...} or bare hex tokens, with {@code ;} and {@code //} comments</li>
+ * <li>The binary cache form written by {@link #writeBinary(int[], File)}</li>
+ * </ul>
+ * Files are memory-mapped and channels read through a reused buffer; bytes are
+ * parsed in place, without building Strings per line or per swatch.
+ */
+
+public final class PaletteLoader {
+
+    /**
+     * "CPTP", the first four bytes of the binary cache form
+     */
+    private static final int BINARY_MAGIC = 0x43505450;
+    private static final int BINARY_VERSION = 1;
+    private static final int BINARY_HEADER_BYTES = 4 + 4 + 8 + 8 + 4;
+
+    /**
+     * "ASEF"
+     */
+    private static final int ASE_MAGIC = 0x41534546;
+    private static final int ASE_COLOR_ENTRY = 0x0001;
+
+    private static final byte[] GPL_MAGIC = {'G', 'I', 'M', 'P', ' ', 'P', 'a', 'l', 'e', 't', 't', 'e'};
+
+    private static final int CHANNEL_BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * Loads a palette file of any supported format
+     *
+     * @param file palette file
+     * @return ARGB colors in file order
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static int[] load(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return load(randomAccessFile.getChannel());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Loads a palette from a file channel, memory-mapping it from the current position
+     */
+    public static int[] load(FileChannel channel) throws IOException {
+        long size = channel.size() - channel.position();
+        if (size <= 0) {
+            return new int[0];
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, channel.position(), size);
+        return parse(new Reader(buffer, null));
+    }
+
+    /**
+     * Loads a palette from any channel, streaming it through a fixed size buffer
+     */
+    public static int[] load(ReadableByteChannel channel) throws IOException {
+        if (channel instanceof FileChannel) {
+            return load((FileChannel) channel);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHANNEL_BUFFER_BYTES);
+        buffer.limit(0);
+        return parse(new Reader(buffer, channel));
+    }
+
+    /**
+     * Loads a palette through its binary cache, re-parsing the source and
+     * rewriting the cache only when the source changed since it was written
+     *
+     * @param source palette file in any supported format
+     * @param cache  location of the binary cache, created if missing or stale
+     * @return ARGB colors in file order
+     */
+    public static int[] loadCached(File source, File cache) throws IOException {
+        if (cache.isFile()) {
+            int[] cached = readBinary(cache, source.length(), source.lastModified());
+            if (cached != null) {
+                return cached;
+            }
+        }
+        int[] colors = load(source);
+        writeBinary(colors, cache, source.length(), source.lastModified());
+        return colors;
+    }
+
+    /**
+     * Writes colors in the binary cache form, which loads with a single bulk copy
+     */
+    public static void writeBinary(int[] colors, File file) throws IOException {
+        writeBinary(colors, file, -1, -1);
+    }
+
+    private static void writeBinary(int[] colors, File file, long sourceLength, long sourceModified)
+            throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        RandomAccessFile randomAccessFile = new RandomAccessFile(temp, "rw");
+        try {
+            randomAccessFile.setLength(0);
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(BINARY_HEADER_BYTES + colors.length * 4)
+                    .order(ByteOrder.BIG_ENDIAN);
+            buffer.putInt(BINARY_MAGIC)
+                    .putInt(BINARY_VERSION)
+                    .putLong(sourceLength)
+                    .putLong(sourceModified)
+                    .putInt(colors.length);
+            buffer.asIntBuffer().put(colors);
+            buffer.position(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+        // swap in the finished file so a crash never leaves a truncated cache behind
+        if (!temp.renameTo(file)) {
+            file.delete();
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not write " + file);
+            }
+        }
+    }
+
+    /**
+     * @return the cached colors, or null if the cache does not match the source
+     */
+    private static int[] readBinary(File file, long sourceLength, long sourceModified) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            if (channel.size() < BINARY_HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.getInt() != BINARY_MAGIC || buffer.getInt() != BINARY_VERSION
+                    || buffer.getLong() != sourceLength || buffer.getLong() != sourceModified) {
+                return null;
+            }
+            return readBinaryColors(buffer);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Reads the color count and colors following a binary header
+     */
+    private static int[] readBinaryColors(ByteBuffer buffer) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / 4) {
+            throw new IOException("Truncated binary palette");
+        }
+        int[] colors = new int[count];
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.get(colors);
+        return colors;
+    }
+
+    private static int[] parse(Reader reader) throws IOException {
+        if (reader.startsWith(BINARY_MAGIC)) {
+            return parseBinary(reader);
+        }
+        if (reader.startsWith(ASE_MAGIC)) {
+            return parseAse(reader);
+        }
+        if (reader.startsWith(GPL_MAGIC)) {
+            return parseGpl(reader);
+        }
+        return parseHexList(reader);
+    }
+
+    private static int[] parseBinary(Reader reader) throws IOException {
+        reader.skip(4 + 4 + 8 + 8);
+        int count = reader.readInt();
+        if (count < 0) {
+            throw new IOException("Malformed binary palette");
+        }
+        int[] colors = new int[count];
+        for (int i = 0; i < count; i++) {
+            colors[i] = reader.readInt();
+        }
+        return colors;
+    }
+
+    /**
+     * GIMP palette: a header, then one {@code R G B [name]} line per swatch;
+     * header fields and comments do not start with a digit and are skipped
+     */
+    private static int[] parseGpl(Reader reader) throws IOException {
+        IntArray colors = new IntArray();
+        reader.skipLine();
+        int c;
+        while ((c = reader.peek()) >= 0) {
+            reader.skipSpacesAndTabs();
+            c = reader.peek();
+            if (c >= '0' && c <= '9') {
+                int r = reader.readDecimal();
+                int g = reader.readDecimal();
+                int b = reader.readDecimal();
+                if (r >= 0 && g >= 0 && b >= 0) {
+                    colors.add(0xFF000000 | (clampByte(r) << 16) | (clampByte(g) << 8) | clampByte(b));
+                }
+            }
+            reader.skipLine();
+        }
+        return colors.toArray();
+    }
+
+    /**
+     * Hex list: whitespace or comma separated hex tokens, optionally prefixed
+     * with {@code #} or {@code 0x}. A token of the wrong length is skipped; a
+     * token with anything but hex digits is a comment and ends the line.
+     */
+    private static int[] parseHexList(Reader reader) throws IOException {
+        IntArray colors = new IntArray();
+        int c;
+        while ((c = reader.peek()) >= 0) {
+            if (c == ' ' || c == '\t' || c == ',' || c == '\r' || c == '\n') {
+                reader.read();
+                continue;
+            }
+            boolean prefixed = false;
+            if (c == '#') {
+                reader.read();
+                prefixed = true;
+            } else if (c == '0') {
+                reader.read();
+                int x = reader.peek();
+                if (x == 'x' || x == 'X') {
+                    reader.read();
+                    prefixed = true;
+                } else {
+                    reader.unread('0');
+                }
+            }
+
+            int value = 0;
+            int digits = 0;
+            int digit;
+            while ((digit = hexDigit(reader.peek())) >= 0) {
+                reader.read();
+                value = (value << 4) | digit;
+                digits++;
+            }
+            int next = reader.peek();
+            boolean endOfToken = next < 0 || next == ' ' || next == '\t' || next == ','
+                    || next == '\r' || next == '\n';
+            if (!endOfToken) {
+                // comment or something that is not a color, ignore the rest of the line
+                reader.skipLine();
+            } else if (digits == 6 || digits == 8) {
+                colors.add(digits == 6 ? 0xFF000000 | value : value);
+            } else if (prefixed && digits == 3) {
+                colors.add(0xFF000000 | PaletteParser.expandShort(value, 3));
+            } else if (prefixed && digits == 4) {
+                colors.add(PaletteParser.expandShort(value, 4));
+            }
+            // any other length is a malformed token, skipped on its own
+        }
+        return colors.toArray();
+    }
+
+    /**
+     * Adobe Swatch Exchange: big-endian blocks, of which only color entries are read
+     */
+    private static int[] parseAse(Reader reader) throws IOException {
+        reader.skip(4 + 2 + 2);
+        int blocks = reader.readInt();
+        IntArray colors = new IntArray(Math.max(0, Math.min(blocks, 1 << 16)));
+        for (int i = 0; i < blocks; i++) {
+            int type = reader.readShort();
+            long length = reader.readInt() & 0xFFFFFFFFL;
+            if (type != ASE_COLOR_ENTRY) {
+                reader.skip(length);
+                continue;
+            }
+
+            int nameChars = reader.readShort();
+            reader.skip(nameChars * 2L);
+            int model = reader.readInt();
+            long read = 2 + nameChars * 2L + 4;
+            int color;
+            switch (model) {
+                case 0x52474220: // "RGB "
+                    color = rgb(reader.readFloat(), reader.readFloat(), reader.readFloat());
+                    read += 12;
+                    break;
+                case 0x434D594B: // "CMYK"
+                    color = cmyk(reader.readFloat(), reader.readFloat(), reader.readFloat(), reader.readFloat());
+                    read += 16;
+                    break;
+                case 0x4C414220: // "LAB "
+                    color = lab(reader.readFloat() * 100f, reader.readFloat(), reader.readFloat());
+                    read += 12;
+                    break;
+                case 0x47726179: // "Gray"
+                    float gray = reader.readFloat();
+                    color = rgb(gray, gray, gray);
+                    read += 4;
+                    break;
+                default:
+                    throw new IOException("Unknown ASE color model 0x" + Integer.toHexString(model));
+            }
+            colors.add(color);
+            reader.skip(length - read);
+        }
+        return colors.toArray();
+    }
+
+    private static int rgb(float r, float g, float b) {
+        return 0xFF000000 | (unitToByte(r) << 16) | (unitToByte(g) << 8) | unitToByte(b);
+    }
+
+    private static int cmyk(float c, float m, float y, float k) {
+        return rgb((1f - c) * (1f - k), (1f - m) * (1f - k), (1f - y) * (1f - k));
+    }
+
+    /**
+     * CIE L*a*b* (D50, as used by ASE) to sRGB
+     */
+    private static int lab(float lightness, float a, float b) {
+        float fy = (lightness + 16f) / 116f;
+        float fx = fy + a / 500f;
+        float fz = fy - b / 200f;
+        float x = 0.9642f * labInverse(fx);
+        float y = labInverse(fy);
+        float z = 0.8251f * labInverse(fz);
+
+        // XYZ (D50) to linear sRGB, Bradford adapted
+        float red = 3.1338561f * x - 1.6168667f * y - 0.4906146f * z;
+        float green = -0.9787684f * x + 1.9161415f * y + 0.0334540f * z;
+        float blue = 0.0719453f * x - 0.2289914f * y + 1.4052427f * z;
+        return 0xFF000000
+                | (ColorSpaces.linearToSrgb((int) (red * ColorSpaces.LINEAR_ONE + 0.5f)) << 16)
+                | (ColorSpaces.linearToSrgb((int) (green * ColorSpaces.LINEAR_ONE + 0.5f)) << 8)
+                | ColorSpaces.linearToSrgb((int) (blue * ColorSpaces.LINEAR_ONE + 0.5f));
+    }
+
+    private static float labInverse(float f) {
+        float cube = f * f * f;
+        return cube > 0.008856f ? cube : (f - 16f / 116f) / 7.787f;
+    }
+
+    private static int unitToByte(float value) {
+        return clampByte((int) (value * 255f + 0.5f));
+    }
+
+    private static int clampByte(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    private static int hexDigit(int c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Byte reader over a mapped buffer, or over a buffer refilled from a channel
+     */
+    private static final class Reader {
+
+        private final ByteBuffer mBuffer;
+        private final ReadableByteChannel mChannel;
+        private int mPushedBack = -1;
+
+        Reader(ByteBuffer buffer, ReadableByteChannel channel) {
+            mBuffer = buffer;
+            mChannel = channel;
+        }
+
+        private boolean fill(int bytes) throws IOException {
+            if (mBuffer.remaining() >= bytes) {
+                return true;
+            }
+            if (mChannel == null) {
+                return false;
+            }
+            mBuffer.compact();
+            try {
+                while (mBuffer.position() < bytes) {
+                    if (mChannel.read(mBuffer) < 0) {
+                        break;
+                    }
+                }
+            } finally {
+                mBuffer.flip();
+            }
+            return mBuffer.remaining() >= bytes;
+        }
+
+        boolean startsWith(int magic) throws IOException {
+            return fill(4) && mBuffer.getInt(mBuffer.position()) == magic;
+        }
+
+        boolean startsWith(byte[] magic) throws IOException {
+            if (!fill(magic.length)) {
+                return false;
+            }
+            for (int i = 0; i < magic.length; i++) {
+                if (mBuffer.get(mBuffer.position() + i) != magic[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int peek() throws IOException {
+            if (mPushedBack >= 0) {
+                return mPushedBack;
+            }
+            return fill(1) ? mBuffer.get(mBuffer.position()) & 0xFF : -1;
+        }
+
+        int read() throws IOException {
+            if (mPushedBack >= 0) {
+                int c = mPushedBack;
+                mPushedBack = -1;
+                return c;
+            }
+            return fill(1) ? mBuffer.get() & 0xFF : -1;
+        }
+
+        void unread(int c) {
+            mPushedBack = c;
+        }
+
+        int readShort() throws IOException {
+            require(2);
+            return mBuffer.getShort() & 0xFFFF;
+        }
+
+        int readInt() throws IOException {
+            require(4);
+            return mBuffer.getInt();
+        }
+
+        float readFloat() throws IOException {
+            require(4);
+            return mBuffer.getFloat();
+        }
+
+        void skip(long bytes) throws IOException {
+            while (bytes > 0) {
+                if (!fill(1)) {
+                    throw new EOFException();
+                }
+                int step = (int) Math.min(bytes, mBuffer.remaining());
+                mBuffer.position(mBuffer.position() + step);
+                bytes -= step;
+            }
+        }
+
+        void skipLine() throws IOException {
+            int c;
+            while ((c = read()) >= 0 && c != '\n') {
+                // skip
+            }
+        }
+
+        void skipSpacesAndTabs() throws IOException {
+            int c;
+            while ((c = peek()) == ' ' || c == '\t') {
+                read();
+            }
+        }
+
+        /**
+         * Reads a non-negative decimal after optional spaces
+         *
+         * @return the value, or -1 if there is no number
+         */
+        int readDecimal() throws IOException {
+            skipSpacesAndTabs();
+            int value = -1;
+            int c;
+            while ((c = peek()) >= '0' && c <= '9') {
+                read();
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+            }
+            return value;
+        }
+
+        private void require(int bytes) throws IOException {
+            if (mPushedBack >= 0 || !fill(bytes)) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * Growable primitive int list
+     */
+    private static final class IntArray {
+
+        private int[] mValues;
+        private int mSize;
+
+        IntArray() {
+            this(256);
+        }
+
+        IntArray(int capacity) {
+            mValues = new int[Math.max(16, capacity)];
+        }
+
+        void add(int value) {
+            if (mSize == mValues.length) {
+                int[] grown = new int[mValues.length * 2];
+                System.arraycopy(mValues, 0, grown, 0, mSize);
+                mValues = grown;
+            }
+            mValues[mSize++] = value;
+        }
+
+        int[] toArray() {
+            int[] values = new int[mSize];
+            System.arraycopy(mValues, 0, values, 0, mSize);
+            return values;
+        }
+    }
+
+    private PaletteLoader() {}
+}
@@ -0,0 +1,112 @@
+package com.kdotj.color_picker_toolbar;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parses color strings into ARGB ints without going through the framework.
+ * <p>
+ * Accepts everything {@code Color.parseColor} does ({@code #RRGGBB},
+ * {@code #AARRGGBB} and the named colors) plus the short {@code #RGB} and
+ * {@code #ARGB} forms allowed in color resources.
+ */
+
+public final class PaletteParser {
+
+    private static final Map<String, Integer> NAMED_COLORS = new HashMap<>();
+
+    static {
+        NAMED_COLORS.put("black", 0xFF000000);
+        NAMED_COLORS.put("darkgray", 0xFF444444);
+        NAMED_COLORS.put("gray", 0xFF888888);
+        NAMED_COLORS.put("lightgray", 0xFFCCCCCC);
+        NAMED_COLORS.put("white", 0xFFFFFFFF);
+        NAMED_COLORS.put("red", 0xFFFF0000);
+        NAMED_COLORS.put("green", 0xFF00FF00);
+        NAMED_COLORS.put("blue", 0xFF0000FF);
+        NAMED_COLORS.put("yellow", 0xFFFFFF00);
+        NAMED_COLORS.put("cyan", 0xFF00FFFF);
+        NAMED_COLORS.put("magenta", 0xFFFF00FF);
+        NAMED_COLORS.put("aqua", 0xFF00FFFF);
+        NAMED_COLORS.put("fuchsia", 0xFFFF00FF);
+        NAMED_COLORS.put("darkgrey", 0xFF444444);
+        NAMED_COLORS.put("grey", 0xFF888888);
+        NAMED_COLORS.put("lightgrey", 0xFFCCCCCC);
+        NAMED_COLORS.put("lime", 0xFF00FF00);
+        NAMED_COLORS.put("maroon", 0xFF800000);
+        NAMED_COLORS.put("navy", 0xFF000080);
+        NAMED_COLORS.put("olive", 0xFF808000);
+        NAMED_COLORS.put("purple", 0xFF800080);
+        NAMED_COLORS.put("silver", 0xFFC0C0C0);
+        NAMED_COLORS.put("teal", 0xFF008080);
+    }
+
+    /**
+     * Parses every entry of a string array resource
+     *
+     * @param colors color strings
+     * @return ARGB colors, in the same order
+     * @throws IllegalArgumentException if an entry is not a color
+     */
+    public static int[] parseColors(String[] colors) {
+        int[] parsed = new int[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            parsed[i] = parseColor(colors[i]);
+        }
+        return parsed;
+    }
+
+    /**
+     * Parses a single color string
+     *
+     * @param color color string, e.g. {@code #FF8800} or {@code red}
+     * @return ARGB color
+     * @throws IllegalArgumentException if the string is not a color
+     */
+    public static int parseColor(String color) {
+        int length = color.length();
+        if (length > 0 && color.charAt(0) == '#') {
+            int value = 0;
+            for (int i = 1; i < length; i++) {
+                int digit = Character.digit(color.charAt(i), 16);
+                if (digit < 0) {
+                    throw new IllegalArgumentException("Unknown color: " + color);
+                }
+                value = (value << 4) | digit;
+            }
+            switch (length) {
+                case 4: // #RGB
+                    return 0xFF000000 | expandShort(value, 3);
+                case 5: // #ARGB
+                    return expandShort(value, 4);
+                case 7: // #RRGGBB
+                    return 0xFF000000 | value;
+                case 9: // #AARRGGBB
+                    return value;
+                default:
+                    throw new IllegalArgumentException("Unknown color: " + color);
+            }
+        }
+
+        Integer named = NAMED_COLORS.get(color.toLowerCase(Locale.ROOT));
+        if (named == null) {
+            throw new IllegalArgumentException("Unknown color: " + color);
+        }
+        return named;
+    }
+
+    /**
+     * Expands 4-bit channels into 8-bit ones, e.g. 0xF80 into 0xFF8800
+     */
+    static int expandShort(int value, int channels) {
+        int expanded = 0;
+        for (int c = channels - 1; c >= 0; c--) {
+            int nibble = (value >> (c * 4)) & 0xF;
+            expanded = (expanded << 8) | (nibble << 4) | nibble;
+        }
+        return expanded;
+    }
+
+    private PaletteParser() {}
+}
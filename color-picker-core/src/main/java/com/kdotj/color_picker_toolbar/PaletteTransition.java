@@ -0,0 +1,141 @@
+package com.kdotj.color_picker_toolbar;
+
+/**
+ * Blends one palette into another, e.g. to animate the Toolbar gradient between
+ * palettes instead of switching abruptly.
+ * <p>
+ * Both palettes are resampled along their gradients onto a common grid of evenly
+ * spaced stops, so palettes of any sizes can be blended stop by stop. The grid is
+ * the smallest one holding every stop of both palettes, so the first and last
+ * frames draw exactly the gradients they start and end on. Stops are blended in
+ * OKLab so intermediate frames stay perceptually even.
+ * <p>
+ * Buffers are allocated when a transition starts; evaluating frames reuses them
+ * and allocates nothing.
+ */
+
+public class PaletteTransition {
+
+    /**
+     * Most stops of a common grid; palettes whose grid would be finer are resampled onto this
+     * many stops, or onto the larger palette's, and lose breakpoints by less than a stop
+     */
+    static final int MAX_STOPS = 256;
+
+    private final GradientSampler mResampler = new GradientSampler();
+    private final float[] mLab = new float[3];
+
+    private int mCount;
+
+    private int[] mFrom = new int[0];
+    private int[] mTo = new int[0];
+    private int[] mFrame = new int[0];
+
+    /**
+     * Both palettes in OKLab, one value per stop
+     */
+    private float[] mFromL = new float[0];
+    private float[] mFromA = new float[0];
+    private float[] mFromB = new float[0];
+    private float[] mToL = new float[0];
+    private float[] mToA = new float[0];
+    private float[] mToB = new float[0];
+
+    /**
+     * Sets up a transition between two palettes
+     *
+     * @param from  ARGB colors the transition starts from
+     * @param to    ARGB colors the transition ends at
+     * @param space space the gradients blend their stops in, so resampling keeps their look
+     */
+    public void start(int[] from, int[] to, InterpolationSpace space) {
+        if (from == null || from.length == 0 || to == null || to.length == 0) {
+            throw new IllegalArgumentException("A palette transition needs at least one color on each side");
+        }
+        int count = commonCount(from.length, to.length);
+        if (count != mCount) {
+            mCount = count;
+            mFrom = new int[count];
+            mTo = new int[count];
+            mFrame = new int[count];
+            mFromL = new float[count];
+            mFromA = new float[count];
+            mFromB = new float[count];
+            mToL = new float[count];
+            mToA = new float[count];
+            mToB = new float[count];
+        }
+        // both may be the frame buffer of a running transition, which resample copies first
+        mResampler.setInterpolationSpace(space);
+        resample(from, mFrom, mFromL, mFromA, mFromB);
+        resample(to, mTo, mToL, mToA, mToB);
+    }
+
+    /**
+     * @return stops of the coarsest even grid holding every stop of two palettes
+     */
+    static int commonCount(int from, int to) {
+        int count = Math.max(from, to);
+        if (from == 1 || to == 1) {
+            return count;
+        }
+        // stop i of n sits at i / (n - 1), so both fit a grid of lcm(n - 1, m - 1) intervals
+        long intervals = (long) (from - 1) / gcd(from - 1, to - 1) * (to - 1);
+        return intervals < MAX_STOPS ? (int) intervals + 1 : Math.max(count, MAX_STOPS);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int r = a % b;
+            a = b;
+            b = r;
+        }
+        return a;
+    }
+
+    private void resample(int[] colors, int[] out, float[] l, float[] a, float[] b) {
+        mResampler.setColors(colors);
+        int last = mCount - 1;
+        for (int i = 0; i < mCount; i++) {
+            int color = last == 0 ? colors[0] : mResampler.sampleFraction((float) i / last);
+            out[i] = color;
+            ColorSpaces.toOkLab(color, mLab);
+            l[i] = mLab[0];
+            a[i] = mLab[1];
+            b[i] = mLab[2];
+        }
+    }
+
+    /**
+     * @return number of stops of every frame
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Blends the palettes
+     *
+     * @param t progress in [0, 1], where 0 is the start palette and 1 the end palette
+     * @return the blended stops; the array is reused by the next call
+     */
+    public int[] evaluate(float t) {
+        if (t <= 0f) {
+            System.arraycopy(mFrom, 0, mFrame, 0, mCount);
+            return mFrame;
+        }
+        if (t >= 1f) {
+            System.arraycopy(mTo, 0, mFrame, 0, mCount);
+            return mFrame;
+        }
+        for (int i = 0; i < mCount; i++) {
+            int fromAlpha = mFrom[i] >>> 24;
+            int alpha = (int) (fromAlpha + ((mTo[i] >>> 24) - fromAlpha) * t + 0.5f);
+            mFrame[i] = (alpha << 24) | ColorSpaces.okLabToRgb(
+                    mFromL[i] + (mToL[i] - mFromL[i]) * t,
+                    mFromA[i] + (mToA[i] - mFromA[i]) * t,
+                    mFromB[i] + (mToB[i] - mFromB[i]) * t);
+        }
+        return mFrame;
+    }
+}
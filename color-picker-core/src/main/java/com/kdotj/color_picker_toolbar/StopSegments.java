@@ -0,0 +1,133 @@
+package com.kdotj.color_picker_toolbar;
+
+import java.util.Arrays;
+
+/**
+ * Splits the gradient into one solid segment per color stop, for using the
+ * Toolbar as a fixed swatch selector.
+ * <p>
+ * Segment boundaries are precomputed as cumulative fractions of the gradient
+ * length, so mapping a position to its stop is a binary search. Instances are
+ * immutable.
+ */
+
+public class StopSegments {
+
+    private final float[] mWeights;
+
+    /**
+     * End of each segment as a fraction of the gradient, the last one being 1
+     */
+    private final float[] mBoundaries;
+
+    /**
+     * Creates equal segments
+     *
+     * @param count number of stops
+     */
+    public StopSegments(int count) {
+        this(count, null);
+    }
+
+    /**
+     * Creates segments sized by weight
+     *
+     * @param count   number of stops
+     * @param weights relative size of each segment, or null for equal segments;
+     *                ignored unless there is one positive weight per stop
+     */
+    public StopSegments(int count, float[] weights) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Segments need at least one stop");
+        }
+        if (!isValid(weights, count)) {
+            weights = null;
+        }
+        mWeights = weights != null ? weights.clone() : null;
+        mBoundaries = new float[count];
+
+        float total = 0f;
+        for (int i = 0; i < count; i++) {
+            total += weights != null ? weights[i] : 1f;
+        }
+        float sum = 0f;
+        for (int i = 0; i < count; i++) {
+            sum += weights != null ? weights[i] : 1f;
+            mBoundaries[i] = sum / total;
+        }
+        mBoundaries[count - 1] = 1f;
+    }
+
+    public int getCount() {
+        return mBoundaries.length;
+    }
+
+    /**
+     * @return a copy of the weights the segments were sized by, or null if they are equal
+     */
+    public float[] getWeights() {
+        return mWeights != null ? mWeights.clone() : null;
+    }
+
+    /**
+     * Finds the stop a position falls in
+     *
+     * @param t fraction of the gradient length, clamped to [0, 1]
+     * @return stop index
+     */
+    public int indexAt(float t) {
+        int low = 0;
+        int high = mBoundaries.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (t < mBoundaries[mid]) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return start of a stop's segment as a fraction of the gradient length
+     */
+    public float startOf(int index) {
+        return index == 0 ? 0f : mBoundaries[index - 1];
+    }
+
+    /**
+     * @return end of a stop's segment as a fraction of the gradient length
+     */
+    public float endOf(int index) {
+        return mBoundaries[index];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StopSegments)) {
+            return false;
+        }
+        return Arrays.equals(mBoundaries, ((StopSegments) o).mBoundaries);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(mBoundaries);
+    }
+
+    private static boolean isValid(float[] weights, int count) {
+        if (weights == null || weights.length != count) {
+            return false;
+        }
+        for (float weight : weights) {
+            if (!(weight > 0f)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,221 @@
+package com.kdotj.color_picker_toolbar;
+
+/**
+ * Finds the perceptually nearest color of a reference palette, e.g. a brand
+ * palette of thousands of swatches the Toolbar should snap to.
+ * <p>
+ * Swatches are converted to OKLab once and stored in a balanced k-d tree laid out
+ * in flat arrays, so a query is a pruned descent with no allocation. The result of
+ * the previous query is kept: repeating it is free, and its distance bounds the
+ * search for the next one, which keeps continuous drags cheap.
+ * <p>
+ * Queries reuse internal scratch state, so an index must only be queried from one
+ * thread at a time.
+ */
+
+public class SwatchIndex {
+
+    private final int[] mSwatches;
+
+    /**
+     * Tree nodes in build order: node i covers a subrange whose median it holds
+     */
+    private final float[] mL;
+    private final float[] mA;
+    private final float[] mB;
+    private final int[] mSwatchIndex;
+
+    private final float[] mQuery = new float[3];
+
+    private boolean mHasLast;
+    private int mLastRgb;
+    private int mLastNode;
+
+    private int mBestIndex;
+    private float mBestDistance;
+
+    /**
+     * Builds an index over a palette
+     *
+     * @param swatches ARGB swatches; alpha is ignored when matching
+     */
+    public SwatchIndex(int[] swatches) {
+        if (swatches == null || swatches.length == 0) {
+            throw new IllegalArgumentException("A swatch index needs at least one swatch");
+        }
+        mSwatches = swatches.clone();
+        int count = mSwatches.length;
+
+        float[] l = new float[count];
+        float[] a = new float[count];
+        float[] b = new float[count];
+        for (int i = 0; i < count; i++) {
+            ColorSpaces.toOkLab(mSwatches[i], mQuery);
+            l[i] = mQuery[0];
+            a[i] = mQuery[1];
+            b[i] = mQuery[2];
+        }
+
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        build(order, l, a, b, 0, count, 0);
+
+        mL = new float[count];
+        mA = new float[count];
+        mB = new float[count];
+        mSwatchIndex = order;
+        for (int i = 0; i < count; i++) {
+            mL[i] = l[order[i]];
+            mA[i] = a[order[i]];
+            mB[i] = b[order[i]];
+        }
+    }
+
+    /**
+     * Shares the tree of another index with fresh query state, so each thread can
+     * query its own copy without rebuilding the tree
+     */
+    SwatchIndex(SwatchIndex index) {
+        mSwatches = index.mSwatches;
+        mL = index.mL;
+        mA = index.mA;
+        mB = index.mB;
+        mSwatchIndex = index.mSwatchIndex;
+    }
+
+    public int size() {
+        return mSwatches.length;
+    }
+
+    /**
+     * @return swatch at an index, as passed to the constructor
+     */
+    public int getSwatch(int index) {
+        return mSwatches[index];
+    }
+
+    /**
+     * Finds the nearest swatch color
+     *
+     * @param color ARGB color; alpha is ignored
+     * @return nearest swatch, with its own alpha
+     */
+    public int nearest(int color) {
+        return mSwatches[nearestIndex(color)];
+    }
+
+    /**
+     * Finds the index of the nearest swatch
+     *
+     * @param color ARGB color; alpha is ignored
+     * @return index into the palette passed to the constructor
+     */
+    public int nearestIndex(int color) {
+        int rgb = color & 0x00FFFFFF;
+        if (mHasLast && rgb == mLastRgb) {
+            return mSwatchIndex[mLastNode];
+        }
+
+        ColorSpaces.toOkLab(rgb, mQuery);
+        if (mHasLast) {
+            // seed with the previous answer; during a drag it is usually at or near the new one
+            mBestIndex = mLastNode;
+            mBestDistance = distance(mLastNode);
+        } else {
+            mBestIndex = -1;
+            mBestDistance = Float.MAX_VALUE;
+        }
+        search(0, mSwatches.length, 0);
+
+        mHasLast = true;
+        mLastRgb = rgb;
+        mLastNode = mBestIndex;
+        return mSwatchIndex[mBestIndex];
+    }
+
+    private void search(int from, int to, int depth) {
+        if (from >= to) {
+            return;
+        }
+        int node = (from + to) >>> 1;
+        float d = distance(node);
+        if (d < mBestDistance) {
+            mBestDistance = d;
+            mBestIndex = node;
+        }
+
+        float delta = axisValue(node, depth % 3) - mQuery[depth % 3];
+        // the query is on the near side of the split; the far side only matters if
+        // the splitting plane is closer than the best match so far
+        if (delta > 0) {
+            search(from, node, depth + 1);
+            if (delta * delta < mBestDistance) {
+                search(node + 1, to, depth + 1);
+            }
+        } else {
+            search(node + 1, to, depth + 1);
+            if (delta * delta < mBestDistance) {
+                search(from, node, depth + 1);
+            }
+        }
+    }
+
+    private float distance(int node) {
+        float dl = mL[node] - mQuery[0];
+        float da = mA[node] - mQuery[1];
+        float db = mB[node] - mQuery[2];
+        return dl * dl + da * da + db * db;
+    }
+
+    private float axisValue(int node, int axis) {
+        return axis == 0 ? mL[node] : (axis == 1 ? mA[node] : mB[node]);
+    }
+
+    /**
+     * Arranges order[from, to) so its median by the depth's axis sits in the middle,
+     * with smaller values before it, then recurses into both halves
+     */
+    private static void build(int[] order, float[] l, float[] a, float[] b, int from, int to, int depth) {
+        if (to - from <= 1) {
+            return;
+        }
+        float[] axis = depth % 3 == 0 ? l : (depth % 3 == 1 ? a : b);
+        int mid = (from + to) >>> 1;
+        select(order, axis, from, to - 1, mid);
+        build(order, l, a, b, from, mid, depth + 1);
+        build(order, l, a, b, mid + 1, to, depth + 1);
+    }
+
+    /**
+     * Quickselect: places the k-th smallest of order[left, right] by key at k
+     */
+    private static void select(int[] order, float[] key, int left, int right, int k) {
+        while (left < right) {
+            int pivotIndex = (left + right) >>> 1;
+            float pivot = key[order[pivotIndex]];
+            swap(order, pivotIndex, right);
+            int store = left;
+            for (int i = left; i < right; i++) {
+                if (key[order[i]] < pivot) {
+                    swap(order, i, store++);
+                }
+            }
+            swap(order, store, right);
+            if (store == k) {
+                return;
+            } else if (store < k) {
+                left = store + 1;
+            } else {
+                right = store - 1;
+            }
+        }
+    }
+
+    private static void swap(int[] values, int i, int j) {
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
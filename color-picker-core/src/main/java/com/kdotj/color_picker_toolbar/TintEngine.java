@@ -0,0 +1,286 @@
+package com.kdotj.color_picker_toolbar;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recolors a pixel buffer with the picked color fast enough to follow a drag, e.g.
+ * by submitting every color a {@code ColorPickerToolbar.ColorChangeListener} receives.
+ * <p>
+ * The image is split into bands of rows that run in parallel on an Executor, and the
+ * last band to finish publishes the result. Only one job runs at a time: a color
+ * submitted meanwhile cancels the running job, which stops at its next row, and
+ * replaces any color still waiting, so the engine always catches up with the latest
+ * color instead of working through stale ones. Results alternate between two output
+ * buffers allocated once, and submitting a color does not allocate.
+ */
+
+public class TintEngine {
+
+    public enum TintMode {
+        /**
+         * Darkens: each channel is multiplied by the color's
+         */
+        MULTIPLY,
+        /**
+         * Lightens: the inverse of multiplying the inverted channels
+         */
+        SCREEN,
+        /**
+         * Takes the color's hue, keeping each pixel's saturation and value
+         */
+        HUE_REPLACE
+    }
+
+    public interface Callback {
+        /**
+         * Called on a worker thread when a color has been applied
+         *
+         * @param pixels the tinted image, valid until the next call; copy it out, e.g.
+         *               with {@code Bitmap.setPixels}, rather than keeping it
+         * @param color  the color that was applied
+         */
+        void onTinted(int[] pixels, int color);
+    }
+
+    /**
+     * Bands per worker, so an uneven band does not leave the other workers idle
+     */
+    private static final int BANDS_PER_THREAD = 4;
+
+    private static ExecutorService sDefaultExecutor;
+
+    private final int[] mSource;
+    private final int mWidth;
+    private final int mHeight;
+    private final Executor mExecutor;
+    private final Band[] mBands;
+
+    private int[] mFront;
+    private int[] mBack;
+
+    private final AtomicInteger mRemaining = new AtomicInteger();
+
+    /**
+     * Incremented for every submission; a band stops once it no longer matches its job's
+     */
+    private volatile int mGeneration;
+
+    private final Object mLock = new Object();
+    private boolean mRunning;
+    private boolean mHasPending;
+    private int mPendingColor;
+    private TintMode mPendingMode;
+    private Callback mPendingCallback;
+
+    /**
+     * The running job, written before its bands are handed to the Executor
+     */
+    private int mJobGeneration;
+    private int mJobColor;
+    private TintMode mJobMode;
+    private Callback mJobCallback;
+    private float mJobHue;
+    private final float[] mJobHsv = new float[3];
+
+    static synchronized Executor getDefaultExecutor() {
+        if (sDefaultExecutor == null) {
+            sDefaultExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactory() {
+                        private final AtomicInteger mCount = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "ColorPickerToolbar-tint-" + mCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return sDefaultExecutor;
+    }
+
+    /**
+     * Creates an engine running on a shared pool with one thread per core
+     *
+     * @param source ARGB pixels of the image to tint, row by row; read, never written
+     */
+    public TintEngine(int[] source, int width, int height) {
+        this(source, width, height, getDefaultExecutor(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param source      ARGB pixels of the image to tint, row by row; read, never written
+     * @param executor    Executor the bands run on
+     * @param parallelism number of threads the Executor can run bands on at once
+     */
+    public TintEngine(int[] source, int width, int height, Executor executor, int parallelism) {
+        if (width <= 0 || height <= 0 || source == null || source.length < width * height) {
+            throw new IllegalArgumentException("Source must hold " + width + "x" + height + " pixels");
+        }
+        mSource = source;
+        mWidth = width;
+        mHeight = height;
+        mExecutor = executor;
+        mFront = new int[width * height];
+        mBack = new int[width * height];
+
+        int bandCount = Math.min(height, Math.max(1, parallelism) * BANDS_PER_THREAD);
+        mBands = new Band[bandCount];
+        for (int i = 0; i < bandCount; i++) {
+            mBands[i] = new Band(height * i / bandCount, height * (i + 1) / bandCount);
+        }
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Tints the image with a color, superseding any earlier color not yet published
+     *
+     * @param color    ARGB color; its alpha is ignored
+     * @param mode     {@see TintMode}
+     * @param callback receives the result
+     */
+    public void submit(int color, TintMode mode, Callback callback) {
+        synchronized (mLock) {
+            mPendingColor = color;
+            mPendingMode = mode;
+            mPendingCallback = callback;
+            mHasPending = true;
+            mGeneration++;
+            if (!mRunning) {
+                startPending();
+            }
+        }
+    }
+
+    /**
+     * Stops the running job and drops any waiting color; nothing is published for them
+     */
+    public void cancel() {
+        synchronized (mLock) {
+            mHasPending = false;
+            mPendingCallback = null;
+            mGeneration++;
+        }
+    }
+
+    /**
+     * Starts the waiting color as the next job; called with mLock held
+     */
+    private void startPending() {
+        mHasPending = false;
+        mRunning = true;
+        mJobGeneration = mGeneration;
+        mJobColor = mPendingColor;
+        mJobMode = mPendingMode;
+        mJobCallback = mPendingCallback;
+        mPendingCallback = null;
+        if (mJobMode == TintMode.HUE_REPLACE) {
+            ColorSpaces.toHsv(mJobColor, mJobHsv);
+            mJobHue = mJobHsv[0];
+        }
+
+        mRemaining.set(mBands.length);
+        for (Band band : mBands) {
+            mExecutor.execute(band);
+        }
+    }
+
+    /**
+     * Called by the last band of a job: publishes it unless it was superseded, then starts the next one
+     */
+    private void finishJob() {
+        if (mJobGeneration == mGeneration) {
+            int[] tinted = mBack;
+            mBack = mFront;
+            mFront = tinted;
+            mJobCallback.onTinted(tinted, mJobColor);
+        }
+        synchronized (mLock) {
+            mRunning = false;
+            if (mHasPending) {
+                startPending();
+            }
+        }
+    }
+
+    private final class Band implements Runnable {
+
+        final int mStartRow;
+        final int mEndRow;
+        final float[] mHsv = new float[3];
+
+        Band(int startRow, int endRow) {
+            mStartRow = startRow;
+            mEndRow = endRow;
+        }
+
+        @Override
+        public void run() {
+            int generation = mJobGeneration;
+            int[] out = mBack;
+            for (int row = mStartRow; row < mEndRow && generation == mGeneration; row++) {
+                tintRow(out, row * mWidth);
+            }
+            if (mRemaining.decrementAndGet() == 0) {
+                finishJob();
+            }
+        }
+
+        private void tintRow(int[] out, int offset) {
+            int end = offset + mWidth;
+            int tr = (mJobColor >> 16) & 0xFF;
+            int tg = (mJobColor >> 8) & 0xFF;
+            int tb = mJobColor & 0xFF;
+            switch (mJobMode) {
+                case MULTIPLY:
+                    for (int i = offset; i < end; i++) {
+                        int p = mSource[i];
+                        out[i] = (p & 0xFF000000)
+                                | (multiply((p >> 16) & 0xFF, tr) << 16)
+                                | (multiply((p >> 8) & 0xFF, tg) << 8)
+                                | multiply(p & 0xFF, tb);
+                    }
+                    break;
+                case SCREEN:
+                    for (int i = offset; i < end; i++) {
+                        int p = mSource[i];
+                        out[i] = (p & 0xFF000000)
+                                | (screen((p >> 16) & 0xFF, tr) << 16)
+                                | (screen((p >> 8) & 0xFF, tg) << 8)
+                                | screen(p & 0xFF, tb);
+                    }
+                    break;
+                default:
+                    for (int i = offset; i < end; i++) {
+                        int p = mSource[i];
+                        ColorSpaces.toHsv(p, mHsv);
+                        out[i] = (p & 0xFF000000) | ColorSpaces.hsvToRgb(mJobHue, mHsv[1], mHsv[2]);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * a * b / 255, rounded, without a division
+     */
+    static int multiply(int a, int b) {
+        int product = a * b + 128;
+        return (product + (product >> 8)) >> 8;
+    }
+
+    static int screen(int a, int b) {
+        return 255 - multiply(255 - a, 255 - b);
+    }
+}
@@ -0,0 +1,98 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class BatchEvaluatorTest {
+
+    private static final int[] PALETTE = {0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0x80FFFFFF};
+
+    @Test
+    public void evaluate_matchesResolve() throws Exception {
+        ColorSelection selection = selection(new GradientSampler(PALETTE, 300));
+        int count = BatchEvaluator.PARALLEL_THRESHOLD * 3 + 17;
+        float[] x = new float[count];
+        float[] y = new float[count];
+        randomTouches(x, y);
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            int[] out = new int[count];
+            new BatchEvaluator(selection, pool, 4).evaluate(x, y, out);
+            for (int i = 0; i < count; i++) {
+                assertEquals(selection.resolve(x[i], y[i]), out[i]);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void evaluate_snapsAndHandlesDiscreteSamplers() throws Exception {
+        GradientSampler sampler = new GradientSampler(PALETTE, 300);
+        sampler.setInterpolationSpace(InterpolationSpace.OKLAB);
+        ColorSelection selection = selection(sampler);
+        selection.setSwatchIndex(new SwatchIndex(new int[]{0xFF101010, 0xFFEEEEEE, 0xFF7F3F00, 0xFF00AAAA}));
+        float[] x = new float[BatchEvaluator.PARALLEL_THRESHOLD * 2];
+        float[] y = new float[x.length];
+        randomTouches(x, y);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            BatchEvaluator evaluator = new BatchEvaluator(selection, pool, 3);
+            int[] out = new int[x.length];
+            evaluator.evaluate(x, y, out);
+            for (int i = 0; i < x.length; i++) {
+                assertEquals(selection.resolve(x[i], y[i]), out[i]);
+            }
+
+            sampler.setSegments(new StopSegments(PALETTE.length));
+            ColorSelection discrete = selection(sampler);
+            new BatchEvaluator(discrete, pool, 3).evaluate(x, y, out);
+            for (int i = 0; i < x.length; i++) {
+                assertEquals(discrete.resolve(x[i], y[i]), out[i]);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void evaluate_writesOnlyTheRange() throws Exception {
+        ColorSelection selection = selection(new GradientSampler(PALETTE, 300));
+        float[] x = {10, 20, 30, 40};
+        float[] y = {10, 20, 30, 40};
+        int[] out = {1, 1, 1, 1};
+        new BatchEvaluator(selection, null, 1).evaluate(x, y, out, 1, 2);
+        assertEquals(1, out[0]);
+        assertEquals(selection.resolve(20, 20), out[1]);
+        assertEquals(selection.resolve(30, 30), out[2]);
+        assertEquals(1, out[3]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void evaluate_rejectsShortOutput() throws Exception {
+        ColorSelection selection = selection(new GradientSampler(PALETTE, 300));
+        new BatchEvaluator(selection, null, 1).evaluate(new float[4], new float[4], new int[3]);
+    }
+
+    private static ColorSelection selection(GradientSampler sampler) {
+        ColorSelection selection = new ColorSelection(sampler);
+        selection.setBounds(8, 8, 300, 56);
+        selection.setMinimumAlpha(20);
+        return selection;
+    }
+
+    private static void randomTouches(float[] x, float[] y) {
+        Random random = new Random(9);
+        for (int i = 0; i < x.length; i++) {
+            x[i] = random.nextFloat() * 340 - 20;
+            y[i] = random.nextFloat() * 90 - 20;
+        }
+    }
+}
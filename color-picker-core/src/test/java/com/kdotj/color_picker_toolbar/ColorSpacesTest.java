@@ -0,0 +1,54 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the fixed-point tables against the exact transfer functions
+ */
+public class ColorSpacesTest {
+
+    @Test
+    public void linearTable_roundTripsEveryByte() throws Exception {
+        for (int c = 0; c < 256; c++) {
+            assertEquals(c, ColorSpaces.linearToSrgb(ColorSpaces.srgbToLinear(c)));
+        }
+    }
+
+    @Test
+    public void cbrt_matchesMath() throws Exception {
+        for (int i = 1; i <= 10000; i++) {
+            float x = i / 10000f;
+            assertEquals(Math.cbrt(x), ColorSpaces.cbrt(x), 1e-5);
+        }
+    }
+
+    @Test
+    public void okLab_roundTrips() throws Exception {
+        float[] lab = new float[3];
+        for (int color = 0; color <= 0xFFFFFF; color += 0x010307) {
+            ColorSpaces.toOkLab(color, lab);
+            assertEquals(color, ColorSpaces.okLabToRgb(lab[0], lab[1], lab[2]));
+        }
+    }
+
+    @Test
+    public void hsv_roundTrips() throws Exception {
+        float[] hsv = new float[3];
+        for (int color = 0; color <= 0xFFFFFF; color += 0x010307) {
+            ColorSpaces.toHsv(color, hsv);
+            assertEquals(color, ColorSpaces.hsvToRgb(hsv[0], hsv[1], hsv[2]));
+        }
+    }
+
+    @Test
+    public void samplerStops_matchInEverySpace() throws Exception {
+        int[] colors = {0xFFFF0000, 0xFF00FF00, 0xFF0000FF};
+        GradientSampler sampler = new GradientSampler(colors, 100f);
+        for (InterpolationSpace space : InterpolationSpace.values()) {
+            sampler.setInterpolationSpace(space);
+            assertEquals(space.name(), 0xFF00FF00, sampler.sampleFraction(0.5f));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips colors sampled from a gradient back to their position
+ */
+public class GradientLocatorTest {
+
+    @Test
+    public void locate_findsSampledColors() throws Exception {
+        Random random = new Random(3);
+        int[] colors = new int[24];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        GradientSampler sampler = new GradientSampler(colors, 1000f);
+        sampler.setInterpolationSpace(InterpolationSpace.OKLAB);
+        GradientLocator locator = new GradientLocator(sampler);
+
+        float[] expected = new float[3];
+        float[] actual = new float[3];
+        for (int i = 0; i <= 200; i++) {
+            int color = sampler.sampleFraction(i / 200f);
+            float fraction = locator.locate(color);
+            assertTrue(fraction >= 0f && fraction <= 1f);
+
+            // a palette can pass through similar colors twice, so compare colors rather than positions
+            ColorSpaces.toOkLab(color, expected);
+            ColorSpaces.toOkLab(sampler.sampleFraction(fraction), actual);
+            float dl = expected[0] - actual[0];
+            float da = expected[1] - actual[1];
+            float db = expected[2] - actual[2];
+            // clipping out of gamut colors bends the rendered curve slightly away from the OKLab line
+            assertEquals(0f, (float) Math.sqrt(dl * dl + da * da + db * db), 0.02f);
+        }
+    }
+
+    @Test
+    public void locate_discreteReturnsSegmentCenter() throws Exception {
+        int[] colors = {0xFFFF0000, 0xFF00FF00, 0xFF0000FF};
+        GradientSampler sampler = new GradientSampler(colors, 400f);
+        sampler.setSegments(new StopSegments(3, new float[]{2f, 1f, 1f}));
+        GradientLocator locator = new GradientLocator(sampler);
+
+        assertEquals(0.25f, locator.locate(0xFFFF1010), 1e-6f);
+        assertEquals(0.625f, locator.locate(0xFF10EE10), 1e-6f);
+        assertEquals(0.875f, locator.locate(0xFF0000FF), 1e-6f);
+    }
+
+    @Test
+    public void place_isInverseOfResolve() throws Exception {
+        int[] colors = {0xFF000000, 0xFFFF0000, 0xFFFFFF00, 0xFFFFFFFF};
+        GradientSampler sampler = new GradientSampler(colors, 600f);
+        ColorSelection selection = new ColorSelection(sampler);
+        selection.setBounds(20, 20, 600, 180);
+        selection.setMinimumAlpha(40);
+        GradientLocator locator = new GradientLocator(sampler);
+
+        int picked = selection.resolve(333f, 120f);
+        selection.resolve(20f, 20f);
+        selection.place(picked, locator.locate(picked));
+
+        assertEquals(333f, selection.getIndicatorX(), 1.5f);
+        assertEquals(120f, selection.getIndicatorY(), 0f);
+        assertEquals(picked, selection.getColor());
+        assertSameColor(picked, selection.resolve(selection.getIndicatorX(), selection.getIndicatorY()));
+    }
+
+    /**
+     * Re-resolving at the placed indicator may round differently, by at most 1 per channel
+     */
+    private static void assertSameColor(int expected, int actual) {
+        String message = Integer.toHexString(expected) + " != " + Integer.toHexString(actual);
+        for (int shift = 0; shift < 32; shift += 8) {
+            assertEquals(message, (expected >>> shift) & 0xFF, (actual >>> shift) & 0xFF, 1);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the analytic gradient against the stops it was built from
+ */
+public class GradientSamplerTest {
+
+    private static final int BLACK = 0xFF000000;
+    private static final int RED = 0xFFFF0000;
+    private static final int WHITE = 0xFFFFFFFF;
+
+    @Test
+    public void endpoints_matchStops() throws Exception {
+        GradientSampler sampler = new GradientSampler(new int[]{BLACK, RED, WHITE}, 100f);
+
+        assertEquals(BLACK, sampler.sample(0f));
+        assertEquals(RED, sampler.sample(50f));
+        assertEquals(WHITE, sampler.sample(100f));
+    }
+
+    @Test
+    public void midpoint_isInterpolated() throws Exception {
+        GradientSampler sampler = new GradientSampler(new int[]{BLACK, WHITE}, 100f);
+
+        assertEquals(0xFF808080, sampler.sample(50f));
+        assertEquals(sampler.sample(49.5f), sampler.sampleAtPixel(49));
+    }
+
+    @Test
+    public void outsideLength_isMirrored() throws Exception {
+        GradientSampler sampler = new GradientSampler(new int[]{BLACK, WHITE}, 100f);
+
+        assertEquals(sampler.sample(25f), sampler.sample(175f));
+        assertEquals(sampler.sample(25f), sampler.sample(-25f));
+        assertEquals(BLACK, sampler.sample(200f));
+    }
+
+    @Test
+    public void singleColor_isConstant() throws Exception {
+        GradientSampler sampler = new GradientSampler(new int[]{RED}, 100f);
+
+        assertEquals(RED, sampler.sample(10f));
+        assertEquals(RED, sampler.sample(90f));
+    }
+}
@@ -0,0 +1,181 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class PadRendererTest {
+
+    private static final int WIDTH = 150;
+    private static final int HEIGHT = 70;
+
+    @Test
+    public void colorPad_locatesTheStripColor() throws Exception {
+        float[] position = new float[2];
+        for (ColorPad.Mode mode : ColorPad.Mode.values()) {
+            for (int color : new int[]{0xFFC83C28, 0xFF3C8CDC, 0xFF808080}) {
+                ColorPad pad = new ColorPad();
+                pad.set(mode, color);
+                pad.locate(color, position);
+                int found = pad.colorAt(position[0], position[1]);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    assertEquals(mode + " " + Integer.toHexString(color),
+                            (color >> shift) & 0xFF, (found >> shift) & 0xFF, 2);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void colorPad_ignoresWhatThePadVaries() throws Exception {
+        ColorPad pad = new ColorPad();
+        pad.set(ColorPad.Mode.SATURATION_VALUE, 0xFF0000FF);
+        assertTrue(pad.set(ColorPad.Mode.SATURATION_VALUE, 0xFFFF0000));
+        // same hue at another value and alpha
+        assertFalse(pad.set(ColorPad.Mode.SATURATION_VALUE, 0x40800000));
+        assertTrue(pad.set(ColorPad.Mode.SATURATION_VALUE, 0xFF00FF00));
+        assertTrue(pad.set(ColorPad.Mode.LIGHTNESS, 0xFF00FF00));
+    }
+
+    @Test
+    public void render_fillsTilesLikeThePad() throws Exception {
+        QueuedExecutor executor = new QueuedExecutor();
+        List<int[]> rendered = new ArrayList<>();
+        PadRenderer renderer = new PadRenderer(executor, record(rendered));
+        renderer.setSize(WIDTH, HEIGHT);
+        renderer.setColor(ColorPad.Mode.SATURATION_VALUE, 0xFF3C8CDC);
+        executor.runAll();
+
+        assertEquals(3, renderer.getColumns());
+        assertEquals(2, renderer.getRows());
+        assertEquals(6, rendered.size());
+
+        ColorPad pad = new ColorPad();
+        pad.set(ColorPad.Mode.SATURATION_VALUE, 0xFF3C8CDC);
+        int[] tile = new int[PadRenderer.TILE_SIZE * PadRenderer.TILE_SIZE];
+        assertEquals(1, renderer.readTile(2, 1, tile, 0));
+        for (int y = 0; y < HEIGHT - PadRenderer.TILE_SIZE; y++) {
+            for (int x = 0; x < WIDTH - 2 * PadRenderer.TILE_SIZE; x++) {
+                int px = 2 * PadRenderer.TILE_SIZE + x;
+                int py = PadRenderer.TILE_SIZE + y;
+                assertEquals(pad.colorAt(ColorPad.fraction(px, WIDTH), ColorPad.fraction(py, HEIGHT)),
+                        tile[y * PadRenderer.TILE_SIZE + x]);
+            }
+        }
+        // an unchanged tile is not copied again
+        tile[0] = 42;
+        assertEquals(1, renderer.readTile(2, 1, tile, 1));
+        assertEquals(42, tile[0]);
+    }
+
+    @Test
+    public void render_onlyRedoesTilesWhenThePadChanges() throws Exception {
+        QueuedExecutor executor = new QueuedExecutor();
+        List<int[]> rendered = new ArrayList<>();
+        PadRenderer renderer = new PadRenderer(executor, record(rendered));
+        renderer.setSize(WIDTH, HEIGHT);
+        renderer.setColor(ColorPad.Mode.SATURATION_VALUE, 0xFFFF0000);
+        executor.runAll();
+        assertEquals(6, rendered.size());
+
+        // alpha and value do not change a saturation/value pad
+        renderer.setColor(ColorPad.Mode.SATURATION_VALUE, 0x80800000);
+        executor.runAll();
+        assertEquals(6, rendered.size());
+
+        renderer.setColor(ColorPad.Mode.SATURATION_VALUE, 0xFF00FF00);
+        executor.runAll();
+        assertEquals(12, rendered.size());
+    }
+
+    @Test
+    public void render_restartsWithTheLatestPad() throws Exception {
+        final QueuedExecutor executor = new QueuedExecutor();
+        final List<int[]> rendered = new ArrayList<>();
+        final PadRenderer[] renderer = new PadRenderer[1];
+        renderer[0] = new PadRenderer(executor, new PadRenderer.Listener() {
+            @Override
+            public void onTileRendered(int column, int row) {
+                rendered.add(new int[]{column, row});
+                if (rendered.size() == 2) {
+                    // a hue drag moves on while the first pad is half rendered
+                    renderer[0].setColor(ColorPad.Mode.SATURATION_VALUE, 0xFF0000FF);
+                }
+            }
+        });
+        renderer[0].setSize(WIDTH, HEIGHT);
+        renderer[0].setColor(ColorPad.Mode.SATURATION_VALUE, 0xFFFF0000);
+        executor.runAll();
+
+        // two tiles of the first pad, then all six of the latest one
+        assertEquals(8, rendered.size());
+        ColorPad latest = new ColorPad();
+        latest.set(ColorPad.Mode.SATURATION_VALUE, 0xFF0000FF);
+        int[] tile = new int[PadRenderer.TILE_SIZE * PadRenderer.TILE_SIZE];
+        renderer[0].readTile(0, 0, tile, -1);
+        assertEquals(latest.colorAt(ColorPad.fraction(0, WIDTH), ColorPad.fraction(0, HEIGHT)), tile[0]);
+    }
+
+    @Test
+    public void stop_rendersNothingUntilAnchoredAgain() throws Exception {
+        final QueuedExecutor executor = new QueuedExecutor();
+        final List<int[]> rendered = new ArrayList<>();
+        final PadRenderer[] renderer = new PadRenderer[1];
+        renderer[0] = new PadRenderer(executor, new PadRenderer.Listener() {
+            @Override
+            public void onTileRendered(int column, int row) {
+                rendered.add(new int[]{column, row});
+                if (rendered.size() == 2) {
+                    // the view is detached while the pad is half rendered
+                    renderer[0].stop();
+                }
+            }
+        });
+        renderer[0].setSize(WIDTH, HEIGHT);
+        renderer[0].setColor(ColorPad.Mode.SATURATION_VALUE, 0xFFFF0000);
+        executor.runAll();
+        assertEquals(2, rendered.size());
+
+        renderer[0].setSize(WIDTH, HEIGHT + 1);
+        executor.runAll();
+        assertEquals(2, rendered.size());
+
+        // anchoring on the same color again only renders what is missing
+        renderer[0].setSize(WIDTH, HEIGHT);
+        renderer[0].setColor(ColorPad.Mode.SATURATION_VALUE, 0xFFFF0000);
+        executor.runAll();
+        assertEquals(6, rendered.size());
+    }
+
+    private static PadRenderer.Listener record(final List<int[]> rendered) {
+        return new PadRenderer.Listener() {
+            @Override
+            public void onTileRendered(int column, int row) {
+                rendered.add(new int[]{column, row});
+            }
+        };
+    }
+
+    /**
+     * Runs submitted work when asked, on the test thread
+     */
+    private static final class QueuedExecutor implements Executor {
+
+        private final List<Runnable> mQueue = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mQueue.add(command);
+        }
+
+        void runAll() {
+            while (!mQueue.isEmpty()) {
+                mQueue.remove(0).run();
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class PaletteExtractorTest {
+
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 90;
+
+    private static final int[] CLUSTERS = {0xFF1E3C8C, 0xFFD23C28, 0xFF3CB450, 0xFFF0DC50};
+
+    @Test
+    public void extract_recoversDistinctClusters() throws Exception {
+        int[] pixels = clusteredImage(new Random(7));
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            int[] colors = new PaletteExtractor(pool, 4).extract(pixels, WIDTH, HEIGHT, CLUSTERS.length);
+            assertEquals(CLUSTERS.length, colors.length);
+            for (int cluster : CLUSTERS) {
+                assertTrue("no color near " + Integer.toHexString(cluster), distanceToNearest(cluster, colors) < 0.03f);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void extract_sortsDarkToLight() throws Exception {
+        int[] colors = new PaletteExtractor(directExecutor(), 1)
+                .extract(clusteredImage(new Random(3)), WIDTH, HEIGHT, CLUSTERS.length);
+        float[] lab = new float[3];
+        float previous = -1f;
+        for (int color : colors) {
+            assertEquals(0xFF, color >>> 24);
+            ColorSpaces.toOkLab(color, lab);
+            assertTrue(lab[0] >= previous);
+            previous = lab[0];
+        }
+    }
+
+    @Test
+    public void extract_parallelMatchesSingleBand() throws Exception {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Random random = new Random(11);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        int[] single = new PaletteExtractor(directExecutor(), 1).extract(pixels, WIDTH, HEIGHT, 16);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            PaletteExtractor parallel = new PaletteExtractor(pool, 7);
+            assertArrayEquals(single, parallel.extract(pixels, WIDTH, HEIGHT, 16));
+            // scratch buffers are reused between runs
+            assertArrayEquals(single, parallel.extract(pixels, WIDTH, HEIGHT, 16));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void extract_withStrideStillFindsClusters() throws Exception {
+        PaletteExtractor extractor = new PaletteExtractor(directExecutor(), 3);
+        extractor.setStride(3);
+        int[] colors = extractor.extract(clusteredImage(new Random(5)), WIDTH, HEIGHT, CLUSTERS.length);
+        assertEquals(CLUSTERS.length, colors.length);
+        for (int cluster : CLUSTERS) {
+            assertTrue(distanceToNearest(cluster, colors) < 0.03f);
+        }
+    }
+
+    @Test
+    public void extract_skipsTransparentPixelsAndCapsAtDistinctColors() throws Exception {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = i % 3 == 0 ? 0xFFFF0000 : 0x2000FF00;
+        }
+        PaletteExtractor extractor = new PaletteExtractor(directExecutor(), 2);
+        int[] colors = extractor.extract(pixels, WIDTH, HEIGHT, 8);
+        assertEquals(1, colors.length);
+        assertEquals(0xFFF80000, colors[0] & 0xFFF8F8F8);
+
+        assertEquals(0, extractor.extract(new int[WIDTH * HEIGHT], WIDTH, HEIGHT, 8).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void extract_rejectsShortBuffers() throws Exception {
+        new PaletteExtractor(directExecutor(), 1).extract(new int[10], WIDTH, HEIGHT, 4);
+    }
+
+    /**
+     * Rectangles of the cluster colors, each with a little noise
+     */
+    private static int[] clusteredImage(Random random) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int color = CLUSTERS[(x * 2 / WIDTH) + 2 * (y * 2 / HEIGHT)];
+                int r = jitter((color >> 16) & 0xFF, random);
+                int g = jitter((color >> 8) & 0xFF, random);
+                int b = jitter(color & 0xFF, random);
+                pixels[y * WIDTH + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+
+    private static int jitter(int channel, Random random) {
+        return Math.max(0, Math.min(255, channel + random.nextInt(13) - 6));
+    }
+
+    private static float distanceToNearest(int color, int[] colors) {
+        float[] a = new float[3];
+        float[] b = new float[3];
+        ColorSpaces.toOkLab(color, a);
+        float best = Float.MAX_VALUE;
+        for (int candidate : colors) {
+            ColorSpaces.toOkLab(candidate, b);
+            float dl = a[0] - b[0];
+            float da = a[1] - b[1];
+            float db = a[2] - b[2];
+            best = Math.min(best, (float) Math.sqrt(dl * dl + da * da + db * db));
+        }
+        return best;
+    }
+
+    private static Executor directExecutor() {
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+    }
+}
@@ -0,0 +1,116 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks each palette file format against a small hand written file
+ */
+public class PaletteLoaderTest {
+
+    @Test
+    public void gpl_readsSwatchLines() throws Exception {
+        File file = write("GIMP Palette\nName: Test\nColumns: 2\n#\n255   0   0\tRed\n  0 128 255 Sky\n");
+
+        assertArrayEquals(new int[]{0xFFFF0000, 0xFF0080FF}, PaletteLoader.load(file));
+    }
+
+    @Test
+    public void hexList_readsTokensAndSkipsComments() throws Exception {
+        File file = write("; paint.net palette\r\nFF112233\r\n#445566, 0x80AABBCC\n// done\nnot a color\n");
+
+        assertArrayEquals(new int[]{0xFF112233, 0xFF445566, 0x80AABBCC}, PaletteLoader.load(file));
+    }
+
+    @Test
+    public void hexList_readsShortFormsAndSkipsOnlyMalformedTokens() throws Exception {
+        File file = write("#FFF, #FF0000, #00FF00\n#12345 0x8F00 #0000FF\nABC 112233\n");
+
+        assertArrayEquals(new int[]{0xFFFFFFFF, 0xFFFF0000, 0xFF00FF00, 0x88FF0000, 0xFF0000FF, 0xFF112233},
+                PaletteLoader.load(file));
+    }
+
+    @Test
+    public void hexList_streamsFromChannel() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            builder.append(String.format("#%06X\n", i));
+        }
+        byte[] bytes = builder.toString().getBytes("US-ASCII");
+
+        int[] colors = PaletteLoader.load(Channels.newChannel(new ByteArrayInputStream(bytes)));
+
+        assertEquals(20000, colors.length);
+        assertEquals(0xFF000000 | 19999, colors[19999]);
+    }
+
+    @Test
+    public void ase_readsRgbAndGraySwatches() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBytes("ASEF");
+        out.writeShort(1);
+        out.writeShort(0);
+        out.writeInt(3);
+        // group start, skipped
+        out.writeShort(0xC001);
+        out.writeInt(4);
+        out.writeShort(1);
+        out.writeShort(0);
+        writeAseColor(out, "RGB ", new float[]{1f, 0.5f, 0f});
+        writeAseColor(out, "Gray", new float[]{1f});
+        out.close();
+
+        assertArrayEquals(new int[]{0xFFFF8000, 0xFFFFFFFF}, PaletteLoader.load(write(bytes.toByteArray())));
+    }
+
+    @Test
+    public void binaryCache_roundTripsAndTracksSource() throws Exception {
+        File source = write("#010203\n#040506\n");
+        File cache = File.createTempFile("palette", ".bin");
+        cache.delete();
+        cache.deleteOnExit();
+
+        int[] parsed = PaletteLoader.loadCached(source, cache);
+        assertTrue(cache.isFile());
+        assertArrayEquals(parsed, PaletteLoader.loadCached(source, cache));
+        assertArrayEquals(parsed, PaletteLoader.load(cache));
+    }
+
+    private static void writeAseColor(DataOutputStream out, String model, float[] values) throws IOException {
+        out.writeShort(1);
+        out.writeInt(2 + 2 + 4 + values.length * 4 + 2);
+        out.writeShort(1);
+        out.writeShort(0);
+        out.writeBytes(model);
+        for (float value : values) {
+            out.writeFloat(value);
+        }
+        out.writeShort(2);
+    }
+
+    private static File write(String content) throws IOException {
+        return write(content.getBytes("US-ASCII"));
+    }
+
+    private static File write(byte[] content) throws IOException {
+        File file = File.createTempFile("palette", ".txt");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,96 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PaletteTransitionTest {
+
+    private static final int[] FROM = {0xFFFF0000, 0xFF0000FF};
+    private static final int[] TO = {0xFF000000, 0x80FFFFFF, 0xFF00FF00, 0xFFFFFF00, 0xFF00FFFF};
+
+    @Test
+    public void evaluate_endsOnBothPalettes() throws Exception {
+        PaletteTransition transition = new PaletteTransition();
+        transition.start(FROM, TO, InterpolationSpace.SRGB);
+        assertEquals(TO.length, transition.getCount());
+        assertArrayEquals(TO, transition.evaluate(1f));
+
+        // the smaller palette is resampled along its own gradient
+        GradientSampler sampler = new GradientSampler(FROM, 1f);
+        int[] start = transition.evaluate(0f);
+        for (int i = 0; i < start.length; i++) {
+            assertEquals(sampler.sampleFraction(i / 4f), start[i]);
+        }
+    }
+
+    @Test
+    public void evaluate_blendsAlphaAndColor() throws Exception {
+        PaletteTransition transition = new PaletteTransition();
+        transition.start(new int[]{0x00000000}, new int[]{0xFFFFFFFF}, InterpolationSpace.OKLAB);
+        int mid = transition.evaluate(0.5f)[0];
+        assertEquals(128, mid >>> 24);
+        // OKLab midpoint of black and white is a mid grey, lighter than the sRGB average
+        int red = (mid >> 16) & 0xFF;
+        assertTrue(red > 90 && red < 110);
+        assertEquals(red, (mid >> 8) & 0xFF);
+        assertEquals(red, mid & 0xFF);
+    }
+
+    @Test
+    public void start_fromRunningFrameContinuesSmoothly() throws Exception {
+        PaletteTransition transition = new PaletteTransition();
+        transition.start(FROM, TO, InterpolationSpace.OKLAB);
+        int[] frame = transition.evaluate(0.3f);
+        int[] shown = frame.clone();
+
+        transition.start(frame, FROM, InterpolationSpace.OKLAB);
+        assertArrayEquals(shown, transition.evaluate(0f));
+        assertSame(frame, transition.evaluate(0.5f));
+    }
+
+    @Test
+    public void evaluate_endsRenderTheSourceAndTargetGradients() throws Exception {
+        int[] from = {0xFFFF0000, 0xFF00FF00, 0xFF0000FF};
+        int[] to = {0xFF000000, 0x80FFFFFF, 0xFFFFFF00, 0xFF00FFFF};
+        PaletteTransition transition = new PaletteTransition();
+        for (InterpolationSpace space : InterpolationSpace.values()) {
+            transition.start(from, to, space);
+
+            // 3 and 4 stops share a grid of 7, which keeps the 0.5 stop and both thirds
+            assertEquals(7, transition.getCount());
+            assertSameRow(from, transition.evaluate(0f), space);
+            assertSameRow(to, transition.evaluate(1f), space);
+        }
+    }
+
+    @Test
+    public void commonCount_isCappedForLargeGrids() throws Exception {
+        assertEquals(5, PaletteTransition.commonCount(2, 5));
+        assertEquals(5, PaletteTransition.commonCount(1, 5));
+        assertEquals(PaletteTransition.MAX_STOPS, PaletteTransition.commonCount(100, 101));
+        assertEquals(1000, PaletteTransition.commonCount(1000, 7));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void start_rejectsEmptyPalettes() throws Exception {
+        new PaletteTransition().start(FROM, new int[0], InterpolationSpace.SRGB);
+    }
+
+    /**
+     * Checks that two sets of stops render the same row, give or take rounding of resampled stops
+     */
+    private static void assertSameRow(int[] expected, int[] actual, InterpolationSpace space) {
+        GradientSampler expectedSampler = new GradientSampler(expected, 1080f);
+        GradientSampler actualSampler = new GradientSampler(actual.clone(), 1080f);
+        expectedSampler.setInterpolationSpace(space);
+        actualSampler.setInterpolationSpace(space);
+        for (int x = 0; x < 1080; x++) {
+            int e = expectedSampler.sampleAtPixel(x);
+            int a = actualSampler.sampleAtPixel(x);
+            for (int shift = 0; shift < 32; shift += 8) {
+                assertEquals(space + " at " + x, (e >>> shift) & 0xFF, (a >>> shift) & 0xFF, 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks segment hit testing against a linear scan of the boundaries
+ */
+public class StopSegmentsTest {
+
+    @Test
+    public void indexAt_equalSegments() throws Exception {
+        StopSegments segments = new StopSegments(4);
+        assertEquals(0, segments.indexAt(0f));
+        assertEquals(0, segments.indexAt(0.249f));
+        assertEquals(1, segments.indexAt(0.25f));
+        assertEquals(2, segments.indexAt(0.6f));
+        assertEquals(3, segments.indexAt(1f));
+        assertEquals(3, segments.indexAt(2f));
+        assertEquals(0, segments.indexAt(-1f));
+    }
+
+    @Test
+    public void indexAt_weightedMatchesLinearScan() throws Exception {
+        float[] weights = {1f, 3f, 0.5f, 2f, 2f, 0.25f, 6f};
+        StopSegments segments = new StopSegments(weights.length, weights);
+        for (int i = 0; i <= 1000; i++) {
+            float t = i / 1000f;
+            int expected = 0;
+            while (expected < weights.length - 1 && t >= segments.endOf(expected)) {
+                expected++;
+            }
+            assertEquals(expected, segments.indexAt(t));
+        }
+        assertEquals(1f / 14.75f, segments.endOf(0), 1e-6f);
+        assertEquals(segments.endOf(0), segments.startOf(1), 0f);
+    }
+
+    @Test
+    public void invalidWeights_fallBackToEqual() throws Exception {
+        assertEquals(new StopSegments(3), new StopSegments(3, new float[]{1f, 2f}));
+        assertEquals(new StopSegments(3), new StopSegments(3, new float[]{1f, 0f, 2f}));
+        assertNull(new StopSegments(3, new float[]{1f, 0f, 2f}).getWeights());
+    }
+
+    @Test
+    public void getWeights_cannotChangeSegments() throws Exception {
+        float[] weights = {1f, 3f};
+        StopSegments segments = new StopSegments(2, weights);
+        weights[0] = 5f;
+        segments.getWeights()[0] = 5f;
+
+        assertArrayEquals(new float[]{1f, 3f}, segments.getWeights(), 0f);
+        assertEquals(0.25f, segments.endOf(0), 0f);
+    }
+
+    @Test
+    public void discreteSampler_drawsAndPicksSolidStops() throws Exception {
+        int[] colors = {0xFFFF0000, 0xFF00FF00, 0xFF0000FF};
+        GradientSampler sampler = new GradientSampler(colors, 300f);
+        sampler.setSegments(new StopSegments(3, new float[]{1f, 1f, 2f}));
+
+        int[] row = new int[300];
+        sampler.fillRow(row, 0, 0, row.length);
+        for (int x = 0; x < row.length; x++) {
+            int index = sampler.stopIndexAtPixel(x);
+            assertEquals(x < 75 ? 0 : (x < 150 ? 1 : 2), index);
+            assertEquals(colors[index], row[x]);
+        }
+    }
+
+    @Test
+    public void discreteSampler_withOrigin_spansFromOrigin() throws Exception {
+        int[] colors = {0xFFFF0000, 0xFF00FF00, 0xFF0000FF};
+        GradientSampler sampler = new GradientSampler(colors, 340f);
+        sampler.setOrigin(40f);
+        sampler.setSegments(new StopSegments(3));
+
+        int[] row = new int[300];
+        sampler.fillRow(row, 0, 40, row.length);
+        for (int x = 0; x < row.length; x++) {
+            int index = sampler.stopIndexAtPixel(40 + x);
+            assertEquals(x / 100, index);
+            assertEquals(colors[index], row[x]);
+        }
+        assertEquals(0.5f, sampler.fractionAt(190f), 0f);
+        assertEquals(190f, sampler.positionOf(0.5f), 0f);
+    }
+}
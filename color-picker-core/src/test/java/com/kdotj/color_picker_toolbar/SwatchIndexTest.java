@@ -0,0 +1,47 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the k-d tree against a brute force scan of the same palette
+ */
+public class SwatchIndexTest {
+
+    @Test
+    public void nearest_matchesBruteForce() throws Exception {
+        Random random = new Random(7);
+        int[] swatches = new int[5000];
+        for (int i = 0; i < swatches.length; i++) {
+            swatches[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        SwatchIndex index = new SwatchIndex(swatches);
+
+        float[] query = new float[3];
+        float[] swatch = new float[3];
+        for (int q = 0; q < 2000; q++) {
+            // a drifting drag rather than independent points, to exercise the seeded search
+            int color = q % 2 == 0 ? random.nextInt(0x1000000) : (0x10101 * (q & 0xFF));
+            ColorSpaces.toOkLab(color, query);
+
+            float best = Float.MAX_VALUE;
+            for (int swatchColor : swatches) {
+                ColorSpaces.toOkLab(swatchColor, swatch);
+                best = Math.min(best, distance(query, swatch));
+            }
+
+            ColorSpaces.toOkLab(index.nearest(color), swatch);
+            assertEquals(best, distance(query, swatch), 0f);
+        }
+    }
+
+    private static float distance(float[] p, float[] q) {
+        float dl = p[0] - q[0];
+        float da = p[1] - q[1];
+        float db = p[2] - q[2];
+        return dl * dl + da * da + db * db;
+    }
+}
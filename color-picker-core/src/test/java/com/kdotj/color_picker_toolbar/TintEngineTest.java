@@ -0,0 +1,170 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class TintEngineTest {
+
+    private static final int WIDTH = 97;
+    private static final int HEIGHT = 61;
+
+    @Test
+    public void multiply_matchesRoundedDivision() throws Exception {
+        for (int a = 0; a < 256; a++) {
+            for (int b = 0; b < 256; b++) {
+                assertEquals(Math.round(a * b / 255f), TintEngine.multiply(a, b));
+            }
+        }
+    }
+
+    @Test
+    public void modes_matchPerPixelReference() throws Exception {
+        int[] source = randomImage();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            TintEngine engine = new TintEngine(source, WIDTH, HEIGHT, pool, 4);
+            int color = 0xFF3399CC;
+            for (TintEngine.TintMode mode : TintEngine.TintMode.values()) {
+                int[] tinted = tintAndWait(engine, color, mode);
+                float[] hsv = new float[3];
+                float[] hue = new float[3];
+                ColorSpaces.toHsv(color, hue);
+                for (int i = 0; i < source.length; i++) {
+                    int p = source[i];
+                    int expected;
+                    switch (mode) {
+                        case MULTIPLY:
+                            expected = (p & 0xFF000000)
+                                    | (Math.round(((p >> 16) & 0xFF) * 0x33 / 255f) << 16)
+                                    | (Math.round(((p >> 8) & 0xFF) * 0x99 / 255f) << 8)
+                                    | Math.round((p & 0xFF) * 0xCC / 255f);
+                            break;
+                        case SCREEN:
+                            expected = (p & 0xFF000000)
+                                    | ((255 - Math.round((255 - ((p >> 16) & 0xFF)) * (255 - 0x33) / 255f)) << 16)
+                                    | ((255 - Math.round((255 - ((p >> 8) & 0xFF)) * (255 - 0x99) / 255f)) << 8)
+                                    | (255 - Math.round((255 - (p & 0xFF)) * (255 - 0xCC) / 255f));
+                            break;
+                        default:
+                            ColorSpaces.toHsv(p, hsv);
+                            expected = (p & 0xFF000000) | ColorSpaces.hsvToRgb(hue[0], hsv[1], hsv[2]);
+                            break;
+                    }
+                    assertEquals(mode + " pixel " + i, expected, tinted[i]);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void submit_supersedesStaleColors() throws Exception {
+        QueueExecutor executor = new QueueExecutor();
+        TintEngine engine = new TintEngine(randomImage(), WIDTH, HEIGHT, executor, 2);
+        final List<Integer> published = new ArrayList<>();
+        TintEngine.Callback callback = new TintEngine.Callback() {
+            @Override
+            public void onTinted(int[] pixels, int color) {
+                published.add(color);
+            }
+        };
+
+        engine.submit(0xFF000001, TintEngine.TintMode.MULTIPLY, callback);
+        // the first job is running; these queue up and only the last one survives
+        engine.submit(0xFF000002, TintEngine.TintMode.MULTIPLY, callback);
+        engine.submit(0xFF000003, TintEngine.TintMode.MULTIPLY, callback);
+        executor.runAll();
+
+        assertEquals(1, published.size());
+        assertEquals(0xFF000003, (int) published.get(0));
+    }
+
+    @Test
+    public void results_alternateBetweenTwoBuffers() throws Exception {
+        QueueExecutor executor = new QueueExecutor();
+        TintEngine engine = new TintEngine(randomImage(), WIDTH, HEIGHT, executor, 2);
+        final List<int[]> buffers = new ArrayList<>();
+        TintEngine.Callback callback = new TintEngine.Callback() {
+            @Override
+            public void onTinted(int[] pixels, int color) {
+                buffers.add(pixels);
+            }
+        };
+        for (int i = 0; i < 4; i++) {
+            engine.submit(0xFF102030 * i, TintEngine.TintMode.SCREEN, callback);
+            executor.runAll();
+        }
+
+        assertEquals(4, buffers.size());
+        assertNotSame(buffers.get(0), buffers.get(1));
+        assertSame(buffers.get(0), buffers.get(2));
+        assertSame(buffers.get(1), buffers.get(3));
+    }
+
+    @Test
+    public void cancel_publishesNothing() throws Exception {
+        QueueExecutor executor = new QueueExecutor();
+        TintEngine engine = new TintEngine(randomImage(), WIDTH, HEIGHT, executor, 2);
+        final List<Integer> published = new ArrayList<>();
+        engine.submit(0xFF00FF00, TintEngine.TintMode.HUE_REPLACE, new TintEngine.Callback() {
+            @Override
+            public void onTinted(int[] pixels, int color) {
+                published.add(color);
+            }
+        });
+        engine.cancel();
+        executor.runAll();
+
+        assertTrue(published.isEmpty());
+    }
+
+    private static int[] tintAndWait(TintEngine engine, int color, TintEngine.TintMode mode) throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<int[]> result = new AtomicReference<>();
+        engine.submit(color, mode, new TintEngine.Callback() {
+            @Override
+            public void onTinted(int[] pixels, int color) {
+                result.set(pixels.clone());
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return result.get();
+    }
+
+    private static int[] randomImage() {
+        Random random = new Random(19);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    private static final class QueueExecutor implements Executor {
+        final List<Runnable> mQueue = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mQueue.add(command);
+        }
+
+        void runAll() {
+            while (!mQueue.isEmpty()) {
+                mQueue.remove(0).run();
+            }
+        }
+    }
+}
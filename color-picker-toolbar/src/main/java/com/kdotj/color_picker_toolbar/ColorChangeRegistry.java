@@ -0,0 +1,117 @@
+package com.kdotj.color_picker_toolbar;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Holds the {@link ColorPickerToolbar.ColorChangeListener}s of a Toolbar and
+ * dispatches color changes to them.
+ * <p>
+ * Listeners may be added or removed at any time, including from inside a
+ * callback; a dispatch always iterates the listeners registered when it started.
+ * Dispatches are skipped when the color is the same ARGB value as the last one.
+ */
+
+class ColorChangeRegistry {
+
+    private static final Registration[] EMPTY = new Registration[0];
+
+    /**
+     * Replaced, never modified, so a dispatch can walk a snapshot without allocating an iterator
+     */
+    private volatile Registration[] mRegistrations = EMPTY;
+
+    private boolean mHasDispatched;
+    private int mLastColor;
+
+    /**
+     * Registers a listener, or updates the Executor of one already registered
+     *
+     * @param listener listener to add
+     * @param executor executor to call it on, or null to call it on the dispatching thread
+     */
+    synchronized void add(ColorPickerToolbar.ColorChangeListener listener, Executor executor) {
+        if (listener == null) {
+            return;
+        }
+        Registration registration = new Registration(listener, executor);
+        int index = indexOf(listener);
+        Registration[] registrations;
+        if (index >= 0) {
+            registrations = mRegistrations.clone();
+        } else {
+            index = mRegistrations.length;
+            registrations = Arrays.copyOf(mRegistrations, index + 1);
+        }
+        registrations[index] = registration;
+        mRegistrations = registrations;
+    }
+
+    synchronized boolean remove(ColorPickerToolbar.ColorChangeListener listener) {
+        int index = indexOf(listener);
+        if (index < 0) {
+            return false;
+        }
+        Registration[] registrations = new Registration[mRegistrations.length - 1];
+        System.arraycopy(mRegistrations, 0, registrations, 0, index);
+        System.arraycopy(mRegistrations, index + 1, registrations, index, registrations.length - index);
+        mRegistrations = registrations;
+        return true;
+    }
+
+    boolean isEmpty() {
+        return mRegistrations.length == 0;
+    }
+
+    /**
+     * Notifies every listener of a color, unless it equals the last one dispatched
+     *
+     * @return true if listeners were notified
+     */
+    boolean dispatch(int color) {
+        if (mHasDispatched && color == mLastColor) {
+            return false;
+        }
+        mHasDispatched = true;
+        mLastColor = color;
+
+        Registration[] registrations = mRegistrations;
+        for (int i = 0; i < registrations.length; i++) {
+            registrations[i].dispatch(color);
+        }
+        return true;
+    }
+
+    private int indexOf(ColorPickerToolbar.ColorChangeListener listener) {
+        for (int i = 0; i < mRegistrations.length; i++) {
+            if (mRegistrations[i].mListener == listener) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Registration {
+
+        final ColorPickerToolbar.ColorChangeListener mListener;
+        final Executor mExecutor;
+
+        Registration(ColorPickerToolbar.ColorChangeListener listener, Executor executor) {
+            mListener = listener;
+            mExecutor = executor;
+        }
+
+        void dispatch(final int color) {
+            if (mExecutor == null) {
+                mListener.onColorChanged(color);
+                return;
+            }
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onColorChanged(color);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package com.kdotj.color_picker_toolbar;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Recently picked and favorite colors, meant to be shared by every picker of an app.
+ * <p>
+ * Recent colors live in a fixed-capacity int ring buffer, newest first, with an
+ * open addressing {@link IntSet} beside it so a color already in the history is
+ * recognized in O(1). Re-picking a color moves it to the front instead of
+ * duplicating it; once the buffer is full the oldest color drops out.
+ * <p>
+ * A history opened on a file keeps it up to date with append-only writes: every
+ * change is one 5 byte record, written on a background thread. When the log grows
+ * well past what it describes it is compacted into a snapshot. Loading reads the
+ * whole file with one call and replays its records, a few microseconds for a
+ * typical history.
+ * <p>
+ * Histories are not thread-safe; use one from the main thread.
+ */
+
+public class ColorHistory {
+
+    public static final int DEFAULT_CAPACITY = 24;
+
+    public interface Listener {
+        void onHistoryChanged(ColorHistory history);
+    }
+
+    /**
+     * "CPTH", the first four bytes of a history file
+     */
+    private static final int FILE_MAGIC = 0x43505448;
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 4 + 4;
+    private static final int RECORD_BYTES = 1 + 4;
+
+    private static final byte OP_RECENT = 1;
+    private static final byte OP_FAVORITE = 2;
+    private static final byte OP_UNFAVORITE = 3;
+    private static final byte OP_CLEAR_RECENTS = 4;
+
+    /**
+     * The log is compacted once it holds this many times more records than colors, plus some slack
+     */
+    private static final int COMPACT_FACTOR = 4;
+    private static final int COMPACT_SLACK = 64;
+
+    /**
+     * Writes every history file in order, apart from the palette thread so a queue of
+     * palettes never holds back a write, or a write a palette
+     */
+    private static ExecutorService sStoreExecutor;
+
+    private final int mCapacity;
+
+    /**
+     * Ring buffer of recent colors; mHead is the slot the next color goes into
+     */
+    private final int[] mRecents;
+    private int mHead;
+    private int mRecentCount;
+    private final IntSet mRecentSet;
+
+    /**
+     * Favorites in the order they were added
+     */
+    private final int[] mFavorites;
+    private int mFavoriteCount;
+    private final IntSet mFavoriteSet;
+
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    private Store mStore;
+
+    /**
+     * Creates a history kept in memory only
+     *
+     * @param capacity most recent colors kept, also the most favorites
+     */
+    public ColorHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        mCapacity = capacity;
+        mRecents = new int[capacity];
+        mRecentSet = new IntSet(capacity);
+        mFavorites = new int[capacity];
+        mFavoriteSet = new IntSet(capacity);
+    }
+
+    /**
+     * Loads a history from a file, creating it if needed, and keeps the file up to date
+     * on a background thread. A damaged file is replaced by an empty history.
+     *
+     * @param file     history file, e.g. in {@code Context.getFilesDir()}
+     * @param capacity most recent colors kept, also the most favorites
+     * @throws IOException if the file cannot be read or created
+     */
+    public static ColorHistory open(File file, int capacity) throws IOException {
+        return open(file, capacity, getStoreExecutor());
+    }
+
+    private static synchronized Executor getStoreExecutor() {
+        if (sStoreExecutor == null) {
+            sStoreExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ColorPickerToolbar-history");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sStoreExecutor;
+    }
+
+    /**
+     * @param executor Executor the file is written on; must run tasks one at a time, in order
+     */
+    static ColorHistory open(File file, int capacity, Executor executor) throws IOException {
+        ColorHistory history = new ColorHistory(capacity);
+        int records = history.load(file);
+        history.mStore = new Store(file, executor, records);
+        if (records < 0 || file.length() != FILE_HEADER_BYTES + (long) records * RECORD_BYTES) {
+            // missing, unreadable or ending in a torn record: start the log afresh, so
+            // appends never land after partial bytes and misalign every later record
+            history.mStore.compact(history.snapshot());
+        }
+        return history;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    public void addListener(Listener listener) {
+        if (listener != null && !mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Records a picked color as the most recent one
+     */
+    public void addRecent(int color) {
+        if (mRecentCount > 0 && getRecent(0) == color) {
+            return;
+        }
+        pushRecent(color);
+        write(OP_RECENT, color);
+        notifyChanged();
+    }
+
+    public int getRecentCount() {
+        return mRecentCount;
+    }
+
+    /**
+     * @param index 0 for the most recent color
+     */
+    public int getRecent(int index) {
+        if (index < 0 || index >= mRecentCount) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mRecentCount);
+        }
+        return mRecents[slotOf(index)];
+    }
+
+    /**
+     * Copies the recent colors, newest first
+     *
+     * @return the number of colors copied
+     */
+    public int copyRecents(int[] out) {
+        int count = Math.min(out.length, mRecentCount);
+        for (int i = 0; i < count; i++) {
+            out[i] = getRecent(i);
+        }
+        return count;
+    }
+
+    public boolean containsRecent(int color) {
+        return mRecentSet.contains(color);
+    }
+
+    public void clearRecents() {
+        if (mRecentCount == 0) {
+            return;
+        }
+        clearRecentsInMemory();
+        write(OP_CLEAR_RECENTS, 0);
+        notifyChanged();
+    }
+
+    /**
+     * @return false if the color already is a favorite or the favorites are full
+     */
+    public boolean addFavorite(int color) {
+        if (mFavoriteCount == mCapacity || !mFavoriteSet.add(color)) {
+            return false;
+        }
+        mFavorites[mFavoriteCount++] = color;
+        write(OP_FAVORITE, color);
+        notifyChanged();
+        return true;
+    }
+
+    public boolean removeFavorite(int color) {
+        if (!removeFavoriteInMemory(color)) {
+            return false;
+        }
+        write(OP_UNFAVORITE, color);
+        notifyChanged();
+        return true;
+    }
+
+    public boolean isFavorite(int color) {
+        return mFavoriteSet.contains(color);
+    }
+
+    public int getFavoriteCount() {
+        return mFavoriteCount;
+    }
+
+    /**
+     * @param index 0 for the first favorite added
+     */
+    public int getFavorite(int index) {
+        if (index < 0 || index >= mFavoriteCount) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mFavoriteCount);
+        }
+        return mFavorites[index];
+    }
+
+    private void pushRecent(int color) {
+        if (mRecentSet.contains(color)) {
+            removeRecent(color);
+        } else if (mRecentCount == mCapacity) {
+            // full: the slot about to be overwritten holds the oldest color
+            mRecentSet.remove(mRecents[mHead]);
+            mRecentCount--;
+        }
+        mRecents[mHead] = color;
+        mHead = (mHead + 1) % mCapacity;
+        mRecentCount++;
+        mRecentSet.add(color);
+    }
+
+    /**
+     * Takes a color out of the ring, moving the newer colors one slot older to close the gap
+     */
+    private void removeRecent(int color) {
+        int index = 0;
+        while (getRecent(index) != color) {
+            index++;
+        }
+        for (int i = index; i > 0; i--) {
+            mRecents[slotOf(i)] = mRecents[slotOf(i - 1)];
+        }
+        mHead = (mHead - 1 + mCapacity) % mCapacity;
+        mRecentCount--;
+        mRecentSet.remove(color);
+    }
+
+    private int slotOf(int index) {
+        return (mHead - 1 - index + 2 * mCapacity) % mCapacity;
+    }
+
+    private void clearRecentsInMemory() {
+        mHead = 0;
+        mRecentCount = 0;
+        mRecentSet.clear();
+    }
+
+    private boolean removeFavoriteInMemory(int color) {
+        if (!mFavoriteSet.remove(color)) {
+            return false;
+        }
+        int index = 0;
+        while (mFavorites[index] != color) {
+            index++;
+        }
+        System.arraycopy(mFavorites, index + 1, mFavorites, index, mFavoriteCount - index - 1);
+        mFavoriteCount--;
+        return true;
+    }
+
+    private void notifyChanged() {
+        for (Listener listener : mListeners) {
+            listener.onHistoryChanged(this);
+        }
+    }
+
+    private void write(byte op, int color) {
+        if (mStore == null) {
+            return;
+        }
+        if (mStore.mRecords + 1 > COMPACT_FACTOR * (mRecentCount + mFavoriteCount) + COMPACT_SLACK) {
+            mStore.compact(snapshot());
+        } else {
+            mStore.append(op, color);
+        }
+    }
+
+    /**
+     * @return records recreating the current state: favorites, then recents oldest first
+     */
+    private byte[] snapshot() {
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_HEADER_BYTES + (mFavoriteCount + mRecentCount) * RECORD_BYTES)
+                .order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(FILE_MAGIC).putInt(FILE_VERSION);
+        for (int i = 0; i < mFavoriteCount; i++) {
+            buffer.put(OP_FAVORITE).putInt(mFavorites[i]);
+        }
+        for (int i = mRecentCount - 1; i >= 0; i--) {
+            buffer.put(OP_RECENT).putInt(getRecent(i));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Replays a history file into this history
+     *
+     * @return the number of records read, or -1 if the file is missing or damaged
+     */
+    private int load(File file) throws IOException {
+        if (!file.exists()) {
+            return -1;
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        ByteBuffer buffer;
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // small enough that one read beats mapping the file
+            buffer = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE))
+                    .order(ByteOrder.BIG_ENDIAN);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading
+            }
+            buffer.flip();
+        } finally {
+            randomAccessFile.close();
+        }
+
+        if (buffer.remaining() < FILE_HEADER_BYTES
+                || buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_VERSION) {
+            return -1;
+        }
+        int records = 0;
+        // a record cut short by a crash mid-append is ignored
+        while (buffer.remaining() >= RECORD_BYTES) {
+            byte op = buffer.get();
+            int color = buffer.getInt();
+            switch (op) {
+                case OP_RECENT:
+                    if (mRecentCount == 0 || getRecent(0) != color) {
+                        pushRecent(color);
+                    }
+                    break;
+                case OP_FAVORITE:
+                    if (mFavoriteCount < mCapacity && mFavoriteSet.add(color)) {
+                        mFavorites[mFavoriteCount++] = color;
+                    }
+                    break;
+                case OP_UNFAVORITE:
+                    removeFavoriteInMemory(color);
+                    break;
+                case OP_CLEAR_RECENTS:
+                    clearRecentsInMemory();
+                    break;
+                default:
+                    clearRecentsInMemory();
+                    while (mFavoriteCount > 0) {
+                        removeFavoriteInMemory(mFavorites[0]);
+                    }
+                    return -1;
+            }
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * Writes records to the history file in order on a background Executor
+     */
+    private static final class Store {
+
+        private final File mFile;
+        private final Executor mExecutor;
+
+        /**
+         * Records in the file once all queued writes are done
+         */
+        int mRecords;
+
+        Store(File file, Executor executor, int records) {
+            mFile = file;
+            mExecutor = executor;
+            mRecords = Math.max(records, 0);
+        }
+
+        void append(final byte op, final int color) {
+            mRecords++;
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        RandomAccessFile randomAccessFile = new RandomAccessFile(mFile, "rw");
+                        try {
+                            randomAccessFile.seek(randomAccessFile.length());
+                            ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES).order(ByteOrder.BIG_ENDIAN);
+                            record.put(op).putInt(color).flip();
+                            FileChannel channel = randomAccessFile.getChannel();
+                            while (record.hasRemaining()) {
+                                channel.write(record);
+                            }
+                        } finally {
+                            randomAccessFile.close();
+                        }
+                    } catch (IOException e) {
+                        // the history still works in memory; the next compaction rewrites the file
+                    }
+                }
+            });
+        }
+
+        void compact(final byte[] snapshot) {
+            mRecords = (snapshot.length - FILE_HEADER_BYTES) / RECORD_BYTES;
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    File temp = new File(mFile.getPath() + ".tmp");
+                    try {
+                        RandomAccessFile randomAccessFile = new RandomAccessFile(temp, "rw");
+                        try {
+                            randomAccessFile.setLength(0);
+                            randomAccessFile.write(snapshot);
+                        } finally {
+                            randomAccessFile.close();
+                        }
+                        // swap in the finished file so a crash never leaves a truncated history behind
+                        if (!temp.renameTo(mFile)) {
+                            mFile.delete();
+                            temp.renameTo(mFile);
+                        }
+                    } catch (IOException e) {
+                        temp.delete();
+                    }
+                }
+            });
+        }
+    }
+}
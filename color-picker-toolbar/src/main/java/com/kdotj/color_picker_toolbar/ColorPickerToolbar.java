@@ -1,19 +1,29 @@
 package com.kdotj.color_picker_toolbar;
 
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.LinearGradient;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Shader;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.support.v4.view.MotionEventCompat;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.WindowManager;
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Color Toolbar View
@@ -24,6 +34,8 @@ public class ColorPickerToolbar extends View {
 
     private static final String TAG = ColorPickerToolbar.class.getSimpleName();
 
+    private static final boolean DEBUG = Log.isLoggable(TAG, Log.DEBUG);
+
     /**
      * Default Indicator Color
      */
@@ -34,11 +46,6 @@ public class ColorPickerToolbar extends View {
      */
     private static final float INDICATOR_STROKE = 4f;
 
-    /**
-     * Default Matrix rotation for ColorToolbar
-     */
-    private static final int MATRIX_ROTATION = 90;
-
     /**
      * Default Color array for the Toolbar
      */
@@ -57,48 +64,325 @@ public class ColorPickerToolbar extends View {
 
     private static final int INDICATOR_WIDTH = 8;
     private static final int MAX_HEIGHT = 56;
-    private static final int MAX_COLOR_VAL = 255;
     private static final int MIN_ALPHA_VAL = 0;
 
+    /**
+     * Palettes up to this many colors are cheap enough to compile on the calling thread
+     */
+    private static final int SYNC_COMPILE_MAX_COLORS = 256;
+
     private static final int DEFAULT_PADDING = 8;
 
-    private int mInternalPadding;
+    /**
+     * Refresh rate assumed until the view is attached to a display
+     */
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+
+    /**
+     * Default height of the 2D pad, in dp
+     */
+    private static final int DEFAULT_PAD_HEIGHT = 160;
 
-    private float mAlpha = 255f;
-    private float mIndicatorX = 0f;
-    private float mIndicatorY = 0f;
+    /**
+     * Pixel dimensions, converted once per density/configuration instead of per frame
+     */
+    private int mInternalPadding;
+    private int mIndicatorWidth;
+    private float mIndicatorStroke;
+    private int mMaxHeight;
 
     private Rect mViewRect = new Rect();
     private Rect mToolbarRect = new Rect();
 
-    private Matrix mMatrix;
-    private Shader mShader;
+    /**
+     * Indicator bounds and position as last drawn, and the scratch rect invalidated when it moves
+     */
+    private final Rect mIndicatorBounds = new Rect();
+    private float mIndicatorBoundsX;
+    private float mIndicatorBoundsY;
+    private final Rect mDirtyRect = new Rect();
+
+    /**
+     * The gradient only varies horizontally, so it is a single pixel row stretched
+     * over the toolbar, shared through {@link GradientCache} and looked up again only
+     * when the colors or size change
+     */
+    private Bitmap mGradientLayer;
+    private boolean mGradientLayerDirty = true;
+    private final Rect mGradientLayerSrc = new Rect();
+
+    private GradientSampler mSampler = new GradientSampler();
+    private final ColorSelection mSelection = new ColorSelection(mSampler);
+    private final PaletteCompiler mPaletteCompiler = new PaletteCompiler();
+
+    /**
+     * Built on the first {@link #setSelectedColor(int)} after the palette or segments change
+     */
+    private GradientLocator mLocator;
+    private PaletteExtractor mPaletteExtractor;
+
+    /**
+     * Publishes a palette compiled in the background, replacing the old one in a single step
+     */
+    private final PaletteCompiler.Callback mPaletteCallback = new PaletteCompiler.Callback() {
+        @Override
+        public void onPaletteCompiled(PaletteCompiler.Compiled palette) {
+            applyPalette(palette);
+        }
+    };
 
     private Paint mBackgroundPaint;
     private Paint mIndicatorPaint;
     private Paint mToolbarPaint;
 
-    private int mMinimumAlphaValue;
     private int mBackgroundColor;
     private int mIndicatorColor;
     private int[] mColors;
     private int mIndicatorType;
     private int mColorArrayResId;
 
-    private int mSelectedColor;
+    private boolean mDiscrete;
+    private float[] mStopWeights;
+    private int mLastStopIndex = -1;
+
+    /**
+     * Set once a color was picked or selected, so only real selections are saved
+     */
+    private boolean mHasSelection;
+
+    /**
+     * A restored selection waiting for the palette it was made on, or null
+     */
+    private SavedState mPendingRestore;
+    private StopSelectedListener mStopSelectedListener;
+
+    private int mRenderMode;
+
+    private boolean mPredictTouches;
+    private final TouchPredictor mPredictor = new TouchPredictor();
+    private boolean mPredicting;
+    private float mPredictedX;
+    private float mPredictedY;
+    private boolean mPredictionPending;
+    private long mFrameIntervalNanos = (long) (1000000000L / DEFAULT_REFRESH_RATE);
+    private int mProvisionalColor;
+    private ProvisionalColorListener mProvisionalColorListener;
+
+    private int mTouchDispatchMode;
+    private boolean mFramePending;
+    private float mPendingX;
+    private float mPendingY;
+    private long mPendingEventTime;
+
+    private PickerMetrics mMetrics;
+    private int mGestureInvalidations;
+
+    /**
+     * Resolves the latest coalesced touch position once per frame
+     */
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFramePending = false;
+            changeColor(mPendingX, mPendingY, mPendingEventTime);
+            updatePrediction(frameTimeNanos);
+        }
+    };
+
+    /**
+     * Predicts the indicator for each frame while touch predictions are shown
+     */
+    private final Choreographer.FrameCallback mPredictionCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mPredictionPending = false;
+            updatePrediction(frameTimeNanos);
+        }
+    };
+
+    private PaletteTransition mTransition;
+    private GradientSampler mTransitionSampler;
+    private int[] mTransitionTarget;
+    private boolean mTransitioning;
+    private long mTransitionStart;
+    private long mTransitionDuration;
+    private float mTransitionProgress;
+
+    /**
+     * Gradient row the transition frames are rendered into, reused while the width stays the same
+     */
+    private Bitmap mTransitionLayer;
+    private int[] mTransitionRow;
+
+    /**
+     * Renders one frame of a palette transition per vsync until it ends
+     */
+    private final Choreographer.FrameCallback mTransitionCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (mTransitionStart < 0) {
+                mTransitionStart = frameTimeNanos;
+            }
+            float t = mTransitionDuration > 0 ? (float) (frameTimeNanos - mTransitionStart) / mTransitionDuration : 1f;
+            if (t >= 1f) {
+                endColorTransition(true);
+                return;
+            }
+            // ease in and out
+            mTransitionProgress = t * t * (3f - 2f * t);
+            drawTransitionFrame();
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+
+    private final ColorChangeRegistry mListeners = new ColorChangeRegistry();
+    private final CopyOnWriteArrayList<ColorSubscription> mSubscriptions = new CopyOnWriteArrayList<>();
+    private ColorHistory mColorHistory;
+
+    private int mPadMode;
+    private int mPadHeight;
+    private final Rect mPadRect = new Rect();
+    private final ColorPad mPad = new ColorPad();
+    private PadRenderer mPadRenderer;
+    private Handler mPadHandler;
+    private Paint mPadIndicatorPaint;
+
+    /**
+     * Strip color the pad spans; colors picked on the pad itself never replace it
+     */
+    private int mPadAnchor;
+
+    /**
+     * Selected position on the pad, as fractions of its width and height
+     */
+    private float mPadU;
+    private float mPadV;
+    private final float[] mPadPosition = new float[2];
+    private boolean mPadGesture;
+
+    /**
+     * Tiles copied out of the renderer, with the version each was copied at
+     */
+    private Bitmap[] mPadTiles = new Bitmap[0];
+    private int[] mPadTileVersions = new int[0];
+    private int[] mPadTilePixels;
+    private final Rect mPadTileSrc = new Rect();
+    private final Rect mPadTileDst = new Rect();
+    private final AtomicBoolean mPadUploadPending = new AtomicBoolean();
+
+    /**
+     * Set on the main thread while detached; uploads posted by a pass still finishing its tile are dropped
+     */
+    private boolean mPadStopped;
 
-    private ColorChangeListener mCallback;
+    private final PadRenderer.Listener mPadListener = new PadRenderer.Listener() {
+        @Override
+        public void onTileRendered(int column, int row) {
+            if (mPadUploadPending.compareAndSet(false, true)) {
+                mPadHandler.post(mPadUpload);
+            }
+        }
+    };
+
+    /**
+     * Copies newly rendered tiles into their bitmaps on the main thread; nothing is computed here
+     */
+    private final Runnable mPadUpload = new Runnable() {
+        @Override
+        public void run() {
+            mPadUploadPending.set(false);
+            if (!mPadStopped) {
+                uploadPadTiles();
+            }
+        }
+    };
 
     public interface ColorChangeListener {
         void onColorChanged(int color);
     }
 
+    /**
+     * Notified of colors under the predicted touch position while the finger moves,
+     * and of the final color when the gesture ends
+     */
+    public interface ProvisionalColorListener {
+        /**
+         * @param color color under the predicted position; superseded by the next real touch event
+         */
+        void onProvisionalColor(int color);
+
+        /**
+         * @param color color under the final touch position, on ACTION_UP
+         */
+        void onColorCommitted(int color);
+    }
+
+    /**
+     * Notified in discrete mode when the touch moves onto another color stop
+     */
+    public interface StopSelectedListener {
+        void onStopSelected(int index, int color);
+    }
+
     public enum IndicatorType {
         NONE,
         CIRCLE,
         BAR
     }
 
+    /**
+     * How MOVE events are turned into color resolves and callbacks
+     */
+    public enum TouchDispatchMode {
+        /**
+         * One resolve and callback per MOVE event
+         */
+        IMMEDIATE,
+        /**
+         * All samples received within one Choreographer frame collapse into a single resolve and callback
+         */
+        FRAME_COALESCED,
+        /**
+         * Every batched historical sample in a MOVE event is resolved and dispatched, in order
+         */
+        HISTORICAL
+    }
+
+    /**
+     * How the Toolbar is rasterized. Neither mode uses the drawing cache.
+     */
+    public enum RenderMode {
+        /**
+         * No layer: the Toolbar draws straight into the window, through the GPU where the window
+         * is accelerated and in software where it is not. Every invalidation re-runs the whole
+         * of onDraw, which stays cheap because the gradient is a single cached bitmap row.
+         */
+        HARDWARE,
+        /**
+         * Draws through a software layer, for windows or devices where GPU rendering is unavailable
+         * or misbehaves. Produces the same pixels and selected colors as {@link #HARDWARE}.
+         */
+        SOFTWARE
+    }
+
+    /**
+     * What the optional 2D pad under the strip varies about the color picked on the strip
+     */
+    public enum PadMode {
+        /**
+         * No pad, the strip only
+         */
+        NONE,
+        /**
+         * Saturation from left to right and value from top to bottom, at the strip color's hue
+         */
+        SATURATION_VALUE,
+        /**
+         * OKLab chroma from left to right and lightness from top to bottom, at the strip color's hue
+         */
+        LIGHTNESS
+    }
+
     public ColorPickerToolbar(Context context) {
         this(context, null);
     }
@@ -114,32 +398,78 @@ public class ColorPickerToolbar extends View {
     }
 
     private void initWith(Context context, AttributeSet attrs) {
-        setDrawingCacheEnabled(true);
         TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.ColorPickerToolbar);
         try {
 
-            mMinimumAlphaValue = typedArray.getInt(R.styleable.ColorPickerToolbar_minimumAlphaValue, MIN_ALPHA_VAL);
+            mSelection.setMinimumAlpha(typedArray.getInt(R.styleable.ColorPickerToolbar_minimumAlphaValue, MIN_ALPHA_VAL));
             mBackgroundColor = typedArray.getColor(R.styleable.ColorPickerToolbar_backgroundColor, Color.TRANSPARENT);
             mIndicatorColor = typedArray.getColor(R.styleable.ColorPickerToolbar_indicatorColor, Color.parseColor(DEFAULT_INDICATOR_COLOR));
             mIndicatorType = typedArray.getInt(R.styleable.ColorPickerToolbar_indicatorType, 0);
             mColorArrayResId = typedArray.getResourceId(R.styleable.ColorPickerToolbar_colors, 0);
+            mTouchDispatchMode = typedArray.getInt(R.styleable.ColorPickerToolbar_touchDispatchMode, 0);
+            mSampler.setInterpolationSpace(InterpolationSpace.values()[
+                    typedArray.getInt(R.styleable.ColorPickerToolbar_interpolationSpace, 0)]);
+            mDiscrete = typedArray.getBoolean(R.styleable.ColorPickerToolbar_discrete, false);
+            mRenderMode = typedArray.getInt(R.styleable.ColorPickerToolbar_renderMode, 0);
+            mPredictTouches = typedArray.getBoolean(R.styleable.ColorPickerToolbar_predictTouches, false);
+            mPadMode = typedArray.getInt(R.styleable.ColorPickerToolbar_padMode, 0);
+            mPadHeight = typedArray.getDimensionPixelSize(R.styleable.ColorPickerToolbar_padHeight,
+                    (int) DeviceDimensionHelper.convertDpToPixel(DEFAULT_PAD_HEIGHT, context));
             mColors = mColorArrayResId != 0 ? getColorsById(mColorArrayResId) : COLORS;
         } finally {
             typedArray.recycle();
         }
 
-        mInternalPadding = (int) DeviceDimensionHelper.convertDpToPixel(DEFAULT_PADDING, getContext());
+        updateDimensions();
+        mSampler.setColors(mColors);
+        mSampler.setSegments(createSegments(mColors.length));
 
         initPainters();
+        applyRenderMode();
+        if (mPadMode != 0) {
+            anchorPad(mColors[0]);
+        }
+    }
+
+    /**
+     * Converts every dp dimension to pixels for the current display metrics
+     */
+    private void updateDimensions() {
+        mInternalPadding = (int) DeviceDimensionHelper.convertDpToPixel(DEFAULT_PADDING, getContext());
+        mIndicatorWidth = (int) DeviceDimensionHelper.convertDpToPixel(INDICATOR_WIDTH, getContext());
+        mIndicatorStroke = DeviceDimensionHelper.convertDpToPixel(INDICATOR_STROKE, getContext());
+        mMaxHeight = (int) DeviceDimensionHelper.convertDpToPixel(MAX_HEIGHT, getContext());
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+
+        int oldPadding = mInternalPadding;
+        int oldMaxHeight = mMaxHeight;
+        updateDimensions();
+        updateIndicatorPaint();
+        updateToolbarRect();
+        computeIndicatorBounds(mIndicatorBounds);
+        if (oldPadding != mInternalPadding || oldMaxHeight != mMaxHeight) {
+            requestLayout();
+        }
+        invalidate();
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
+        long drawStart = mMetrics != null ? System.nanoTime() : 0;
         super.onDraw(canvas);
 
         canvas.drawRect(mViewRect, mBackgroundPaint);
 
-        canvas.drawRect(mToolbarRect, mToolbarPaint);
+        if (ensureGradientLayer()) {
+            canvas.drawBitmap(mGradientLayer, mGradientLayerSrc, mToolbarRect, mToolbarPaint);
+        }
+        if (mPadMode != 0) {
+            drawPad(canvas);
+        }
 
         switch (mIndicatorType) {
             case 0: // no op
@@ -147,23 +477,101 @@ public class ColorPickerToolbar extends View {
                 break;
             case 1:
 
-                canvas.drawCircle(mIndicatorX , mIndicatorY, (int) DeviceDimensionHelper.convertDpToPixel(INDICATOR_WIDTH, getContext()), mIndicatorPaint);
+                canvas.drawCircle(getDrawnIndicatorX(), getDrawnIndicatorY(), mIndicatorWidth, mIndicatorPaint);
                 break;
             case 2:
-                float right;
-                float left;
-                if (mIndicatorX + (int) DeviceDimensionHelper.convertDpToPixel(INDICATOR_WIDTH, getContext()) >= getWidth()) {
-                    right = getWidth();
-                    left = getWidth() - (int) DeviceDimensionHelper.convertDpToPixel(INDICATOR_WIDTH, getContext());
-                } else {
-                    left = mIndicatorX;
-                    right = left + (int) DeviceDimensionHelper.convertDpToPixel(INDICATOR_WIDTH, getContext());
-                }
+                float left = getBarLeft();
 //                canvas.drawRect(mInternalPadding, mInternalPadding, getWidth() - mInternalPadding, getHeight() - mInternalPadding, mToolbarPaint);
-                canvas.drawRect(left, 0, right, getHeight(), mIndicatorPaint);
+                canvas.drawRect(left, 0, left + mIndicatorWidth, getHeight() - getPadArea(), mIndicatorPaint);
+                break;
+        }
+
+        if (mMetrics != null) {
+            mMetrics.onDrawDuration(System.nanoTime() - drawStart);
+        }
+
+    }
+
+    /**
+     * Fetches the gradient layer again if the colors or size changed since it was last drawn
+     *
+     * @return true if there is a layer to draw
+     */
+    private boolean ensureGradientLayer() {
+        int width = mToolbarRect.width();
+        if (width <= 0 || mToolbarRect.height() <= 0) {
+            return false;
+        }
+        if (!mGradientLayerDirty && mGradientLayer != null) {
+            return true;
+        }
+
+        mGradientLayer = GradientCache.getInstance().getLayer(mSampler, mColors, mToolbarRect.left, width, 1);
+        mGradientLayerSrc.set(0, 0, width, 1);
+        mGradientLayerDirty = false;
+        return true;
+    }
+
+    /**
+     * Left edge of the BAR indicator, kept inside the view at the right edge
+     */
+    private float getBarLeft() {
+        float x = getDrawnIndicatorX();
+        if (x + mIndicatorWidth >= getWidth()) {
+            return getWidth() - mIndicatorWidth;
+        }
+        return x;
+    }
+
+    /**
+     * Indicator position on screen: the predicted position while one is shown, else the selection
+     */
+    private float getDrawnIndicatorX() {
+        return mPredicting ? mPredictedX : mSelection.getIndicatorX();
+    }
+
+    private float getDrawnIndicatorY() {
+        return mPredicting ? mPredictedY : mSelection.getIndicatorY();
+    }
+
+    /**
+     * Computes the area the indicator covers at its current position
+     */
+    private void computeIndicatorBounds(Rect out) {
+        mIndicatorBoundsX = getDrawnIndicatorX();
+        mIndicatorBoundsY = getDrawnIndicatorY();
+        switch (mIndicatorType) {
+            case 1:
+                int radius = mIndicatorWidth + (int) Math.ceil(mIndicatorStroke / 2f) + 1;
+                int x = (int) getDrawnIndicatorX();
+                int y = (int) getDrawnIndicatorY();
+                out.set(x - radius, y - radius, x + radius + 1, y + radius + 1);
+                break;
+            case 2:
+                int left = (int) getBarLeft();
+                out.set(left, 0, left + mIndicatorWidth + 1, getHeight() - getPadArea());
+                break;
+            default:
+                out.setEmpty();
                 break;
         }
+    }
 
+    /**
+     * Invalidates only the union of where the indicator was and where it is now,
+     * or nothing if it has not moved since it was last drawn
+     */
+    private void invalidateIndicator() {
+        if (getDrawnIndicatorX() == mIndicatorBoundsX && getDrawnIndicatorY() == mIndicatorBoundsY) {
+            return;
+        }
+        mDirtyRect.set(mIndicatorBounds);
+        computeIndicatorBounds(mIndicatorBounds);
+        mDirtyRect.union(mIndicatorBounds);
+        if (!mDirtyRect.isEmpty()) {
+            mGestureInvalidations++;
+            invalidate(mDirtyRect);
+        }
     }
 
     @Override
@@ -176,7 +584,7 @@ public class ColorPickerToolbar extends View {
         int heightSize = MeasureSpec.getSize(heightMeasureSpec);
 
         int desiredWidth = widthSize;
-        int desiredHeight = (int) DeviceDimensionHelper.convertDpToPixel(MAX_HEIGHT, getContext());
+        int desiredHeight = mMaxHeight + getPadArea();
 
         int width;
         int height;
@@ -217,6 +625,23 @@ public class ColorPickerToolbar extends View {
         mViewRect.top = 0;
         mViewRect.bottom = h;
 
+        updateToolbarRect();
+        if (mSelection.getFraction() >= 0f) {
+            // a color selected before layout, or before the size changed, keeps its place
+            mSelection.place(mSelection.getColor(), mSelection.getFraction());
+        } else {
+            mSelection.setIndicatorX(mToolbarRect.left);
+            mSelection.setIndicatorY(mToolbarRect.top);
+        }
+        computeIndicatorBounds(mIndicatorBounds);
+    }
+
+    /**
+     * Lays out the toolbar inside the view, inset when an indicator is shown
+     */
+    private void updateToolbarRect() {
+        int w = mViewRect.width();
+        int h = mViewRect.height() - getPadArea();
         if(mIndicatorType != 0){
             mToolbarRect.left = mInternalPadding;
             mToolbarRect.top = mInternalPadding;
@@ -226,119 +651,711 @@ public class ColorPickerToolbar extends View {
             mToolbarRect.left = mViewRect.left;
             mToolbarRect.right = mViewRect.right;
             mToolbarRect.top = mViewRect.top;
-            mToolbarRect.bottom = mViewRect.bottom;
+            mToolbarRect.bottom = mViewRect.top + h;
         }
 
-        mIndicatorX = mToolbarRect.left;
-        mIndicatorY = mToolbarRect.top;
+        mSelection.setBounds(mToolbarRect.left, mToolbarRect.top, mToolbarRect.right, mToolbarRect.bottom);
 
-        mShader = new LinearGradient(0, 0, 0, mToolbarRect.right, mColors, null, Shader.TileMode.MIRROR);
-        mShader.setLocalMatrix(mMatrix);
-        mToolbarPaint.setShader(mShader);
+        updateGradient();
+        updatePadRect();
     }
 
-    public void setColors(int[] colors) {
-        mColors = colors;
-        invalidate();
+    /**
+     * Height the pad and its gap take below the strip
+     */
+    private int getPadArea() {
+        return mPadMode != 0 ? mPadHeight + mInternalPadding : 0;
     }
 
-    public int[] getColors() {
-        return mColors;
+    /**
+     * Lays out the pad under the strip, inset from the bottom like the strip is from the top
+     */
+    private void updatePadRect() {
+        if (mPadMode == 0) {
+            mPadRect.setEmpty();
+            return;
+        }
+        int inset = mToolbarRect.top - mViewRect.top;
+        mPadRect.set(mToolbarRect.left, mToolbarRect.bottom + mInternalPadding,
+                mToolbarRect.right, mViewRect.bottom - inset);
+        if (mPadRenderer != null) {
+            mPadRenderer.setSize(mPadRect.width(), mPadRect.height());
+        }
     }
 
-    public void setColorArrayResId(int colorArrayResId){
-        mColorArrayResId = colorArrayResId;
-        mColors = getColorsById(mColorArrayResId);
-        invalidate();
+    /**
+     * Fits the sampler to the toolbar and marks the gradient layer for re-rendering
+     */
+    private void updateGradient() {
+        fitSampler(mSampler);
+        mGradientLayerDirty = true;
     }
 
-    public int getColorArrayResId(){
-        return mColorArrayResId;
+    /**
+     * Fits a sampler to the toolbar. Segments are laid across the strip itself, while the
+     * continuous gradient keeps starting at x = 0 like the original {@code LinearGradient},
+     * so the colors it picks do not move.
+     */
+    private void fitSampler(GradientSampler sampler) {
+        sampler.setOrigin(mDiscrete ? mToolbarRect.left : 0f);
+        sampler.setLength(mToolbarRect.right);
     }
 
-    public void setIndicatorColor(int indicatorColor) {
-        mIndicatorColor = indicatorColor;
-        if (mIndicatorPaint != null) {
-            mIndicatorPaint.setColor(mIndicatorColor);
+    /**
+     * Switches to a compiled palette. Its sampler and layer were built for the
+     * geometry and interpolation space at submission time, so they are re-fitted
+     * if either changed since.
+     */
+    private void applyPalette(PaletteCompiler.Compiled palette) {
+        InterpolationSpace space = mSampler.getInterpolationSpace();
+        palette.mSampler.setInterpolationSpace(space);
+        fitSampler(palette.mSampler);
+        palette.mSampler.setSegments(createSegments(palette.mColors.length));
+
+        mColors = palette.mColors;
+        mSampler = palette.mSampler;
+        mSelection.setSampler(mSampler);
+        mLocator = null;
+        mLastStopIndex = -1;
+        if (mPendingRestore != null) {
+            // the restored selection only applies to the palette it was made on
+            SavedState pending = mPendingRestore;
+            mPendingRestore = null;
+            if (pending.mPaletteFingerprint == getPaletteFingerprint()) {
+                restoreSelection(pending);
+            }
         }
-        invalidate();
-    }
-
-    public int getIndicatorColor() {
-        return mIndicatorColor;
-    }
 
-    public void setBackgroundColor(int backgroundColor) {
-        mBackgroundColor = backgroundColor;
-        if (mBackgroundPaint != null) {
-            mBackgroundPaint.setColor(mBackgroundColor);
+        // the compiler renders continuous layers only
+        if (!mDiscrete && palette.mLayer != null && palette.mSpace == space
+                && palette.mLayerLeft == mToolbarRect.left && palette.mLayerWidth == mToolbarRect.width()) {
+            mGradientLayer = palette.mLayer;
+            mGradientLayerSrc.set(0, 0, palette.mLayerWidth, 1);
+            mGradientLayerDirty = false;
+        } else {
+            mGradientLayerDirty = true;
         }
         invalidate();
     }
 
-    public int getBackgroundColor() {
-        return mBackgroundColor;
+    /**
+     * Sets the gradient colors. Large palettes are prepared in the background and
+     * the current gradient stays in use until they are ready.
+     *
+     * @param colors ARGB colors, evenly spaced across the toolbar
+     */
+    public void setColors(int[] colors) {
+        PaletteCompiler.validate(colors);
+        endColorTransition(false);
+        final int[] palette = colors.clone();
+        if (palette.length <= SYNC_COMPILE_MAX_COLORS) {
+            applyPalette(mPaletteCompiler.compileNow(palette, mSampler.getInterpolationSpace(),
+                    mToolbarRect.right, mToolbarRect.left, mToolbarRect.width()));
+            return;
+        }
+        mPaletteCompiler.submit(new PaletteCompiler.Source() {
+            @Override
+            public int[] load() {
+                return palette;
+            }
+        }, mSampler.getInterpolationSpace(), mToolbarRect.right, mToolbarRect.left, mToolbarRect.width(),
+                mPaletteCallback);
     }
 
-    public IndicatorType getIndicatorType() {
-        return IndicatorType.values()[mIndicatorType];
+    public int[] getColors() {
+        return mColors;
     }
 
-    public void setIndicatorType(IndicatorType indicatorType) {
-        switch (indicatorType) {
-            case CIRCLE:
-                mIndicatorType = 1;
-                break;
-            case BAR:
-                mIndicatorType = 2;
-                break;
-            default:
-                mIndicatorType = 0;
-                break;
+    /**
+     * Blends the gradient into new colors over a duration, keeping the selected color
+     * at the indicator up to date and notifying listeners as it changes. Palettes of
+     * different sizes blend into each other; {@link #getColors()} returns the new
+     * colors once the transition ends. Starting a transition while one is running
+     * continues from the gradient currently shown.
+     *
+     * @param colors         ARGB colors, evenly spaced across the toolbar
+     * @param durationMillis length of the transition
+     */
+    public void animateColors(int[] colors, long durationMillis) {
+        PaletteCompiler.validate(colors);
+        // a palette still compiling must not land in the middle of the transition
+        mPaletteCompiler.cancel();
+        if (mTransition == null) {
+            mTransition = new PaletteTransition();
+            mTransitionSampler = new GradientSampler();
         }
-        invalidate();
-        requestLayout();
-    }
-
-    public void setIndicatorX(float x) {
-        mIndicatorX = x;
-        invalidate();
-    }
 
-    public float getIndicatorX() {
-        return mIndicatorX;
+        int[] from = mTransitioning ? mTransition.evaluate(mTransitionProgress) : mColors;
+        mTransitionTarget = colors.clone();
+        mTransition.start(from, mTransitionTarget, mSampler.getInterpolationSpace());
+        mTransitionSampler.setInterpolationSpace(mSampler.getInterpolationSpace());
+        mTransitionSampler.setColors(mTransition.evaluate(0f));
+        mTransitionSampler.setSegments(createSegments(mTransition.getCount()));
+        mSelection.setSampler(mTransitionSampler);
+        mLocator = null;
+        mLastStopIndex = -1;
+
+        mTransitionProgress = 0f;
+        mTransitionStart = -1;
+        mTransitionDuration = Math.max(0, durationMillis) * 1000000L;
+        if (!mTransitioning) {
+            mTransitioning = true;
+            Choreographer.getInstance().postFrameCallback(mTransitionCallback);
+        }
     }
 
-    public void setIndicatorY(float y) {
-        mIndicatorY = y;
-        invalidate();
+    /**
+     * @return true while {@link #animateColors(int[], long)} is blending the gradient
+     */
+    public boolean isAnimatingColors() {
+        return mTransitioning;
     }
 
-    public float getIndicatorY() {
-        return mIndicatorY;
-    }
+    /**
+     * Renders the transition at its current progress into the reused layer and
+     * re-resolves the color under the indicator
+     */
+    private void drawTransitionFrame() {
+        mTransitionSampler.setColors(mTransition.evaluate(mTransitionProgress));
+        fitSampler(mTransitionSampler);
+
+        int width = mToolbarRect.width();
+        if (width > 0 && mToolbarRect.height() > 0) {
+            if (mTransitionLayer == null || mTransitionLayer.getWidth() != width) {
+                mTransitionLayer = Bitmap.createBitmap(width, 1, Bitmap.Config.ARGB_8888);
+                mTransitionRow = new int[width];
+            }
+            mTransitionSampler.fillRow(mTransitionRow, 0, mToolbarRect.left, width);
+            mTransitionLayer.setPixels(mTransitionRow, 0, width, 0, 0, width, 1);
+            mGradientLayer = mTransitionLayer;
+            mGradientLayerSrc.set(0, 0, width, 1);
+            mGradientLayerDirty = false;
+        }
 
-    public void setSelectedColor(int color) {
-        mSelectedColor = color;
+        int color = mSelection.getColor();
+        if (mSelection.refresh() != color) {
+            dispatchColor(mSelection.getColor());
+        }
         invalidate();
     }
 
-    public int getSelectedColor() {
-        return mSelectedColor;
-    }
+    /**
+     * Stops a running palette transition
+     *
+     * @param complete true to switch to the target colors, false to fall back to the current ones
+     */
+    private void endColorTransition(boolean complete) {
+        if (!mTransitioning) {
+            return;
+        }
+        mTransitioning = false;
+        Choreographer.getInstance().removeFrameCallback(mTransitionCallback);
+        mSelection.setSampler(mSampler);
+        mGradientLayerDirty = true;
+        if (!complete) {
+            invalidate();
+            return;
+        }
 
-    public void setAlphaValue(float alphaValue) {
-        mAlpha = alphaValue;
-        invalidate();
+        // compiled right away even when large, so the gradient never falls back to the old colors
+        int[] target = mTransitionTarget;
+        mTransitionTarget = null;
+        applyPalette(mPaletteCompiler.compileNow(target, mSampler.getInterpolationSpace(),
+                mToolbarRect.right, mToolbarRect.left, mToolbarRect.width()));
+        int color = mSelection.getColor();
+        if (mSelection.refresh() != color) {
+            dispatchColor(mSelection.getColor());
+        }
+    }
+
+    /**
+     * Sets the gradient colors from an array resource, read and prepared in the
+     * background; the current gradient stays in use until they are ready
+     *
+     * @param colorArrayResId array resource of colors
+     */
+    public void setColorArrayResId(final int colorArrayResId){
+        mColorArrayResId = colorArrayResId;
+        endColorTransition(false);
+        if (isInEditMode()) {
+            applyPalette(mPaletteCompiler.compileNow(getColorsById(colorArrayResId), mSampler.getInterpolationSpace(),
+                    mToolbarRect.right, mToolbarRect.left, mToolbarRect.width()));
+            return;
+        }
+        mPaletteCompiler.submit(new PaletteCompiler.Source() {
+            @Override
+            public int[] load() {
+                return getColorsById(colorArrayResId);
+            }
+        }, mSampler.getInterpolationSpace(), mToolbarRect.right, mToolbarRect.left, mToolbarRect.width(),
+                mPaletteCallback);
+    }
+
+    public int getColorArrayResId(){
+        return mColorArrayResId;
+    }
+
+    /**
+     * Sets the gradient colors to the representative colors of an image, extracted
+     * and prepared in the background; the current gradient stays in use until they are ready
+     *
+     * @param pixels     ARGB pixels, row by row; must not change until the new gradient is applied
+     * @param width      image width
+     * @param height     image height
+     * @param colorCount most gradient colors to extract
+     * @see PaletteExtractor
+     */
+    public void setColorsFromPixels(final int[] pixels, final int width, final int height, final int colorCount) {
+        endColorTransition(false);
+        final PaletteExtractor extractor = getPaletteExtractor();
+        mPaletteCompiler.submit(new PaletteCompiler.Source() {
+            @Override
+            public int[] load() {
+                return extractor.extract(pixels, width, height, colorCount);
+            }
+        }, mSampler.getInterpolationSpace(), mToolbarRect.right, mToolbarRect.left, mToolbarRect.width(),
+                mPaletteCallback);
+    }
+
+    /**
+     * @return the extractor used by {@link #setColorsFromPixels(int[], int, int, int)},
+     * e.g. to set its sampling stride
+     */
+    public PaletteExtractor getPaletteExtractor() {
+        if (mPaletteExtractor == null) {
+            mPaletteExtractor = new PaletteExtractor();
+        }
+        return mPaletteExtractor;
+    }
+
+    /**
+     * Sets the color space the gradient blends its colors in, for both drawing and picking
+     *
+     * @param interpolationSpace {@see InterpolationSpace}
+     */
+    public void setInterpolationSpace(InterpolationSpace interpolationSpace) {
+        mSampler.setInterpolationSpace(interpolationSpace);
+        mLocator = null;
+        mGradientLayerDirty = true;
+        invalidate();
+    }
+
+    public InterpolationSpace getInterpolationSpace() {
+        return mSampler.getInterpolationSpace();
+    }
+
+    /**
+     * Draws the colors as solid segments instead of a gradient. Touches then select
+     * a whole stop, reported as is, and listeners are only notified when the stop changes.
+     *
+     * @param discrete true for one segment per color
+     */
+    public void setDiscrete(boolean discrete) {
+        mDiscrete = discrete;
+        updateSegments();
+    }
+
+    public boolean isDiscrete() {
+        return mDiscrete;
+    }
+
+    /**
+     * Sizes the discrete segments relative to each other
+     *
+     * @param weights one positive weight per color, or null for equal segments; weights
+     *                that do not match the number of colors fall back to equal segments
+     */
+    public void setStopWeights(float[] weights) {
+        mStopWeights = weights != null ? weights.clone() : null;
+        updateSegments();
+    }
+
+    public float[] getStopWeights() {
+        return mStopWeights;
+    }
+
+    /**
+     * @return the stop selected by the last touch, or -1 if none or not discrete
+     */
+    public int getSelectedStopIndex() {
+        return mLastStopIndex;
+    }
+
+    public void setStopSelectedListener(StopSelectedListener stopSelectedListener) {
+        mStopSelectedListener = stopSelectedListener;
+    }
+
+    private StopSegments createSegments(int count) {
+        return mDiscrete && count > 0 ? new StopSegments(count, mStopWeights) : null;
+    }
+
+    private void updateSegments() {
+        fitSampler(mSampler);
+        mSampler.setSegments(createSegments(mColors.length));
+        mLocator = null;
+        mLastStopIndex = -1;
+        mGradientLayerDirty = true;
+        invalidate();
+    }
+
+    public void setIndicatorColor(int indicatorColor) {
+        mIndicatorColor = indicatorColor;
+        if (mIndicatorPaint != null) {
+            mIndicatorPaint.setColor(mIndicatorColor);
+            mPadIndicatorPaint.setColor(mIndicatorColor);
+        }
+        invalidate(mIndicatorBounds);
+    }
+
+    public int getIndicatorColor() {
+        return mIndicatorColor;
+    }
+
+    public void setBackgroundColor(int backgroundColor) {
+        mBackgroundColor = backgroundColor;
+        if (mBackgroundPaint != null) {
+            mBackgroundPaint.setColor(mBackgroundColor);
+        }
+        invalidate();
+    }
+
+    public int getBackgroundColor() {
+        return mBackgroundColor;
+    }
+
+    public IndicatorType getIndicatorType() {
+        return IndicatorType.values()[mIndicatorType];
+    }
+
+    public void setIndicatorType(IndicatorType indicatorType) {
+        switch (indicatorType) {
+            case CIRCLE:
+                mIndicatorType = 1;
+                break;
+            case BAR:
+                mIndicatorType = 2;
+                break;
+            default:
+                mIndicatorType = 0;
+                break;
+        }
+        updateIndicatorPaint();
+        updateToolbarRect();
+        computeIndicatorBounds(mIndicatorBounds);
+        invalidate();
+        requestLayout();
+    }
+
+    public void setIndicatorX(float x) {
+        mSelection.setIndicatorX(x);
+        invalidateIndicator();
+    }
+
+    public float getIndicatorX() {
+        return mSelection.getIndicatorX();
+    }
+
+    public void setIndicatorY(float y) {
+        mSelection.setIndicatorY(y);
+        invalidateIndicator();
+    }
+
+    public float getIndicatorY() {
+        return mSelection.getIndicatorY();
+    }
+
+    /**
+     * Selects a color and moves the indicator to the closest match on the gradient,
+     * with the color's alpha on the vertical axis. Listeners are not notified.
+     *
+     * @param color ARGB color
+     */
+    public void setSelectedColor(int color) {
+        if (mLocator == null) {
+            mLocator = new GradientLocator(mSampler);
+        }
+        mSelection.place(color, mLocator.locate(color));
+        mHasSelection = true;
+        mPendingRestore = null;
+        mPadAnchor = color;
+        if (mSampler.isDiscrete()) {
+            mLastStopIndex = mSampler.getSegments().indexAt(mSelection.getFraction());
+        }
+        invalidateIndicator();
+    }
+
+    public int getSelectedColor() {
+        return mSelection.getColor();
+    }
+
+    /**
+     * Switches between hardware and software rendering
+     *
+     * @param renderMode {@see RenderMode}
+     */
+    public void setRenderMode(RenderMode renderMode) {
+        mRenderMode = renderMode.ordinal();
+        applyRenderMode();
+        invalidate();
+    }
+
+    /**
+     * Shows or hides the 2D pad under the strip, whose vertical axis varies the
+     * value or lightness of the color picked on the strip
+     *
+     * @param padMode {@see PadMode}
+     */
+    public void setPadMode(PadMode padMode) {
+        if (mPadMode == padMode.ordinal()) {
+            return;
+        }
+        mPadMode = padMode.ordinal();
+        if (mPadMode != 0) {
+            anchorPad(mHasSelection ? mPadAnchor : mColors[0]);
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    public PadMode getPadMode() {
+        return PadMode.values()[mPadMode];
+    }
+
+    /**
+     * @param padHeight height of the pad in pixels
+     */
+    public void setPadHeight(int padHeight) {
+        mPadHeight = padHeight;
+        requestLayout();
+        invalidate();
+    }
+
+    public int getPadHeight() {
+        return mPadHeight;
+    }
+
+    /**
+     * Anchors the pad on a strip color; the renderer only re-renders it if the pad changed
+     */
+    private void anchorPad(int color) {
+        ColorPad.Mode mode = mPadMode == PadMode.LIGHTNESS.ordinal()
+                ? ColorPad.Mode.LIGHTNESS : ColorPad.Mode.SATURATION_VALUE;
+        if (mPadRenderer == null) {
+            mPadHandler = new Handler(Looper.getMainLooper());
+            mPadRenderer = new PadRenderer(mPadListener);
+            mPadRenderer.setSize(mPadRect.width(), mPadRect.height());
+        }
+        mPadStopped = false;
+        mPadAnchor = color;
+        mPad.set(mode, color);
+        mPadRenderer.setColor(mode, color);
+    }
+
+    /**
+     * Re-anchors the pad on a new strip color, with the pad selection on the strip color itself
+     */
+    private void followStrip(int color) {
+        anchorPad(color);
+        mPad.locate(color, mPadPosition);
+        mPadU = mPadPosition[0];
+        mPadV = mPadPosition[1];
+        invalidatePad();
+    }
+
+    /**
+     * Selects the pad color at a touch position, keeping the alpha picked on the strip
+     */
+    private void changePadColor(float x, float y) {
+        int width = mPadRect.width();
+        int height = mPadRect.height();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        int px = Math.min(Math.max((int) x - mPadRect.left, 0), width - 1);
+        int py = Math.min(Math.max((int) y - mPadRect.top, 0), height - 1);
+        mPadU = ColorPad.fraction(px, width);
+        mPadV = ColorPad.fraction(py, height);
+
+        int color = ColorSelection.withAlpha(mPad.colorAt(mPadU, mPadV), (int) mSelection.getAlpha());
+        mSelection.setColor(color);
+        mHasSelection = true;
+        mPendingRestore = null;
+        dispatchColor(color);
+        invalidatePad();
+    }
+
+    /**
+     * Invalidates the pad including the part of its indicator that overhangs its edges
+     */
+    private void invalidatePad() {
+        int overhang = mIndicatorWidth + (int) Math.ceil(mIndicatorStroke);
+        invalidate(mPadRect.left - overhang, mPadRect.top - overhang,
+                mPadRect.right + overhang, mPadRect.bottom + overhang);
+    }
+
+    private void uploadPadTiles() {
+        if (mPadRenderer == null) {
+            return;
+        }
+        int columns = mPadRenderer.getColumns();
+        int count = columns * mPadRenderer.getRows();
+        if (mPadTiles.length < count) {
+            Bitmap[] tiles = new Bitmap[count];
+            System.arraycopy(mPadTiles, 0, tiles, 0, mPadTiles.length);
+            for (int i = mPadTiles.length; i < count; i++) {
+                tiles[i] = Bitmap.createBitmap(PadRenderer.TILE_SIZE, PadRenderer.TILE_SIZE, Bitmap.Config.ARGB_8888);
+            }
+            mPadTiles = tiles;
+            mPadTileVersions = Arrays.copyOf(mPadTileVersions, count);
+        }
+        if (mPadTilePixels == null) {
+            mPadTilePixels = new int[PadRenderer.TILE_SIZE * PadRenderer.TILE_SIZE];
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < count; i++) {
+            int version = mPadRenderer.readTile(i % columns, i / columns, mPadTilePixels, mPadTileVersions[i]);
+            if (version != mPadTileVersions[i]) {
+                mPadTiles[i].setPixels(mPadTilePixels, 0, PadRenderer.TILE_SIZE, 0, 0,
+                        PadRenderer.TILE_SIZE, PadRenderer.TILE_SIZE);
+                mPadTileVersions[i] = version;
+                changed = true;
+            }
+        }
+        if (changed) {
+            invalidate(mPadRect);
+        }
+    }
+
+    /**
+     * Draws the pad tiles rendered so far and the pad indicator
+     */
+    private void drawPad(Canvas canvas) {
+        int width = mPadRect.width();
+        int height = mPadRect.height();
+        if (width <= 0 || height <= 0 || mPadRenderer == null) {
+            return;
+        }
+        int columns = (width + PadRenderer.TILE_SIZE - 1) / PadRenderer.TILE_SIZE;
+        int rows = (height + PadRenderer.TILE_SIZE - 1) / PadRenderer.TILE_SIZE;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int i = row * columns + column;
+                if (i >= mPadTiles.length || mPadTileVersions[i] == 0) {
+                    continue;
+                }
+                int x = column * PadRenderer.TILE_SIZE;
+                int y = row * PadRenderer.TILE_SIZE;
+                int tileWidth = Math.min(PadRenderer.TILE_SIZE, width - x);
+                int tileHeight = Math.min(PadRenderer.TILE_SIZE, height - y);
+                mPadTileSrc.set(0, 0, tileWidth, tileHeight);
+                mPadTileDst.set(mPadRect.left + x, mPadRect.top + y,
+                        mPadRect.left + x + tileWidth, mPadRect.top + y + tileHeight);
+                canvas.drawBitmap(mPadTiles[i], mPadTileSrc, mPadTileDst, null);
+            }
+        }
+        canvas.drawCircle(mPadRect.left + mPadU * width, mPadRect.top + mPadV * height,
+                mIndicatorWidth, mPadIndicatorPaint);
+    }
+
+    public RenderMode getRenderMode() {
+        return RenderMode.values()[mRenderMode];
+    }
+
+    private void applyRenderMode() {
+        if (mRenderMode == 1) { // SOFTWARE
+            setLayerType(LAYER_TYPE_SOFTWARE, null);
+        } else {
+            // no layer at all: a hardware layer would be re-rendered whole on every indicator move
+            setLayerType(LAYER_TYPE_NONE, null);
+        }
+    }
+
+    /**
+     * Draws the indicator where the finger is predicted to be by the next frame, hiding a
+     * frame of touch latency. Colors at predicted positions go to the
+     * {@link ProvisionalColorListener}; ColorChangeListeners still only see real touch positions.
+     *
+     * @param predictTouches true to extrapolate touch positions
+     */
+    public void setPredictTouches(boolean predictTouches) {
+        mPredictTouches = predictTouches;
+        if (!predictTouches) {
+            clearPrediction();
+        }
+    }
+
+    public boolean isPredictTouches() {
+        return mPredictTouches;
+    }
+
+    public void setProvisionalColorListener(ProvisionalColorListener provisionalColorListener) {
+        mProvisionalColorListener = provisionalColorListener;
+    }
+
+    public TouchDispatchMode getTouchDispatchMode() {
+        return TouchDispatchMode.values()[mTouchDispatchMode];
+    }
+
+    /**
+     * Snaps picked colors to the perceptually nearest color of a reference palette
+     *
+     * @param swatches reference palette, or null to pick raw gradient colors
+     */
+    public void setSnapPalette(int[] swatches) {
+        setSwatchIndex(swatches != null ? new SwatchIndex(swatches) : null);
+    }
+
+    /**
+     * Snaps picked colors using a prebuilt index, e.g. one built off the main thread
+     *
+     * @param swatchIndex {@see SwatchIndex}, or null to pick raw gradient colors
+     */
+    public void setSwatchIndex(SwatchIndex swatchIndex) {
+        mSelection.setSwatchIndex(swatchIndex);
+    }
+
+    public SwatchIndex getSwatchIndex() {
+        return mSelection.getSwatchIndex();
+    }
+
+    /**
+     * Sets the Executor palettes are parsed and prepared on, instead of the shared background thread
+     *
+     * @param executor Executor for palette work, or null for the default
+     */
+    public void setPaletteExecutor(Executor executor) {
+        mPaletteCompiler.setExecutor(executor);
+    }
+
+    public void setTouchDispatchMode(TouchDispatchMode touchDispatchMode) {
+        mTouchDispatchMode = touchDispatchMode.ordinal();
+        cancelPendingFrame();
+    }
+
+    /**
+     * Sets a sink for touch latency, draw cost and resolve rate samples
+     *
+     * @param metrics metrics sink, or null to stop measuring entirely
+     */
+    public void setMetrics(PickerMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    public PickerMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    public void setAlphaValue(float alphaValue) {
+        mSelection.setAlpha(alphaValue);
     }
 
     public float getAlphaValue() {
-        return mAlpha;
+        return mSelection.getAlpha();
     }
 
     public void setMinimumAlphaValue(int minimumAlphaValue) {
-        mMinimumAlphaValue = minimumAlphaValue;
-        invalidate();
+        mSelection.setMinimumAlpha(minimumAlphaValue);
     }
 
     /**
@@ -351,40 +1368,93 @@ public class ColorPickerToolbar extends View {
         mBackgroundPaint.setColor(mBackgroundColor);
 
         mIndicatorPaint = new Paint();
+        updateIndicatorPaint();
+        mIndicatorPaint.setColor(mIndicatorColor);
+
+        mPadIndicatorPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mPadIndicatorPaint.setStyle(Paint.Style.STROKE);
+        mPadIndicatorPaint.setStrokeWidth(mIndicatorStroke);
+        mPadIndicatorPaint.setColor(mIndicatorColor);
+
+        // nearest-neighbour stretch of the gradient row, so no filtering
+        mToolbarPaint = new Paint();
+        mToolbarPaint.setFilterBitmap(false);
+    }
+
+    /**
+     * Styles the indicator for the current indicator type
+     */
+    private void updateIndicatorPaint() {
         if (mIndicatorType == 1) {
             mIndicatorPaint.setStyle(Paint.Style.STROKE);
-            mIndicatorPaint.setStrokeWidth(DeviceDimensionHelper.convertDpToPixel(INDICATOR_STROKE, getContext()));
+            mIndicatorPaint.setStrokeWidth(mIndicatorStroke);
         } else {
             mIndicatorPaint.setStyle(Paint.Style.FILL_AND_STROKE);
         }
-        mIndicatorPaint.setColor(mIndicatorColor);
-
-        mToolbarPaint = new Paint();
-        mToolbarPaint.setStyle(Paint.Style.FILL_AND_STROKE);
+    }
 
-        mMatrix = new Matrix();
-        mMatrix.setRotate(MATRIX_ROTATION);
+    /**
+     * Adds a Listener to the Toolbar to listen for Color changes, called on the UI thread
+     *
+     * @param colorChangeListener {@see #ColorChangeListener}
+     */
+    public void addColorChangeListener(ColorChangeListener colorChangeListener) {
+        mListeners.add(colorChangeListener, null);
+    }
 
-        mToolbarPaint.setShader(mShader);
+    /**
+     * Adds a Listener to the Toolbar to listen for Color changes, called on the given Executor
+     * so heavy work never blocks touch handling
+     *
+     * @param colorChangeListener {@see #ColorChangeListener}
+     * @param executor            Executor the listener is called on
+     */
+    public void addColorChangeListener(ColorChangeListener colorChangeListener, Executor executor) {
+        mListeners.add(colorChangeListener, executor);
     }
 
     /**
-     * Adds a Listener to the Toolbar to listen for Color changes
+     * Removes a Listener previously added to the Toolbar
      *
      * @param colorChangeListener {@see #ColorChangeListener}
      */
-    public void addColorChangeListener(ColorChangeListener colorChangeListener) {
-        mCallback = colorChangeListener;
+    public void removeColorChangeListener(ColorChangeListener colorChangeListener) {
+        mListeners.remove(colorChangeListener);
+    }
+
+    /**
+     * Subscribes to picked colors with latest-value-wins delivery, for consumers too slow
+     * to keep up with every touch event
+     *
+     * @param subscriber {@see ColorSubscription.Subscriber}
+     * @param executor   Executor deliveries run on, or null to deliver on the UI thread
+     * @param minDeltaE  smallest OKLab distance from the last delivered color worth delivering,
+     *                   e.g. 0.02 for barely noticeable differences, or 0 for every change
+     * @return the subscription, to cancel it
+     */
+    public ColorSubscription subscribe(ColorSubscription.Subscriber subscriber, Executor executor, float minDeltaE) {
+        ColorSubscription subscription = new ColorSubscription(subscriber, executor, minDeltaE, mSubscriptions);
+        mSubscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Records the final color of every gesture as a recent color
+     *
+     * @param colorHistory {@see ColorHistory}, usually one shared by all pickers, or null
+     */
+    public void setColorHistory(ColorHistory colorHistory) {
+        mColorHistory = colorHistory;
+    }
+
+    public ColorHistory getColorHistory() {
+        return mColorHistory;
     }
 
     private int[] getColorsById(int id) {
         if (isInEditMode()) {
             String[] s = getContext().getResources().getStringArray(id);
-            int[] colors = new int[s.length];
-            for (int j = 0; j < s.length; j++) {
-                colors[j] = Color.parseColor(s[j]);
-            }
-            return colors;
+            return PaletteParser.parseColors(s);
         } else {
             TypedArray typedArray = getContext().getResources().obtainTypedArray(id);
             int[] colors = new int[typedArray.length()];
@@ -396,48 +1466,305 @@ public class ColorPickerToolbar extends View {
         }
     }
 
-    private void changeColor(float x, float y) {
+    /**
+     * Resolves the color at a touch position and notifies listeners
+     *
+     * @param eventTime {@link MotionEvent#getEventTime()} of the sample, for latency metrics
+     */
+    private void changeColor(float x, float y, long eventTime) {
+
+        // a real position always replaces the prediction drawn for it
+        mPredicting = false;
+        int color = mSelection.resolve(x, y);
+        mHasSelection = true;
+        mPendingRestore = null;
+        mPadAnchor = color;
+        if (mPadMode != 0) {
+            followStrip(color);
+        }
+        boolean notify = true;
+        if (mSampler.isDiscrete()) {
+            // moving within a segment cannot change the color, so only stop changes are reported
+            int index = mSelection.getStopIndex();
+            notify = index != mLastStopIndex;
+            mLastStopIndex = index;
+        }
 
-        float pixelX;
-        float pixelY;
+        if (notify) {
+            dispatchColor(color);
+            if (mStopSelectedListener != null && mLastStopIndex >= 0) {
+                mStopSelectedListener.onStopSelected(mLastStopIndex, color);
+            }
 
-        if (y <= mToolbarRect.top) {
-            pixelY = mToolbarRect.top;
-            mIndicatorY = pixelY ;
-            mAlpha = mMinimumAlphaValue;
-        } else if (y > mToolbarRect.top && y < mToolbarRect.bottom) {
-            pixelY = y;
-            mIndicatorY = pixelY;
-            mAlpha = Math.max(y, mMinimumAlphaValue);
-        }else {
-            pixelY = mToolbarRect.bottom - 1;
-            mIndicatorY = pixelY;
-            mAlpha = MAX_COLOR_VAL;
+            if (mMetrics != null) {
+                long now = System.nanoTime();
+                mMetrics.onColorResolved(now);
+                // event times are uptimeMillis, which shares System.nanoTime's monotonic clock
+                mMetrics.onTouchToCallbackLatency(now - eventTime * 1000000L);
+            }
         }
 
-        if (x <= mToolbarRect.left) {
-            pixelX = mToolbarRect.left;
-            mIndicatorX = pixelX;
-        } else if (x > mToolbarRect.left && x < mToolbarRect.right) {
-            pixelX = x;
-            mIndicatorX = pixelX;
+        invalidateIndicator();
+    }
+
+    /**
+     * Reports a new selected color to listeners and subscribers
+     */
+    private void dispatchColor(int color) {
+        mListeners.dispatch(color);
+        if (mSubscriptions.isEmpty()) {
+            // iterating allocates, and most toolbars have no subscribers
+            return;
+        }
+        for (ColorSubscription subscription : mSubscriptions) {
+            subscription.publish(color);
+        }
+    }
+
+    /**
+     * Queues a touch position to be resolved on the next frame, keeping only the latest one
+     */
+    private void scheduleChangeColor(float x, float y, long eventTime) {
+        mPendingX = x;
+        mPendingY = y;
+        if (!mFramePending) {
+            // latency is measured from the oldest sample the frame absorbs
+            mPendingEventTime = eventTime;
+            mFramePending = true;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
+    /**
+     * Feeds every sample of a touch event, including batched history, to the predictor
+     */
+    private void trackTouch(MotionEvent event) {
+        for (int h = 0; h < event.getHistorySize(); h++) {
+            mPredictor.addSample(event.getHistoricalEventTime(h), event.getHistoricalX(h), event.getHistoricalY(h));
+        }
+        mPredictor.addSample(event.getEventTime(), event.getX(), event.getY());
+    }
+
+    private void schedulePrediction() {
+        if (mPredictTouches && !mPredictionPending) {
+            mPredictionPending = true;
+            Choreographer.getInstance().postFrameCallback(mPredictionCallback);
+        }
+    }
+
+    /**
+     * Moves the drawn indicator to where the finger is predicted to be when this frame is
+     * shown and reports its color as provisional, or back to the real position once the
+     * finger has stopped sending samples
+     *
+     * @param frameTimeNanos vsync time of the frame being drawn, on the event time clock
+     */
+    private void updatePrediction(long frameTimeNanos) {
+        if (!mPredictTouches) {
+            return;
+        }
+        // a frame drawn now reaches the screen on the following vsync
+        long displayMillis = (frameTimeNanos + mFrameIntervalNanos) / 1000000L;
+        if (mPredictor.isStale(frameTimeNanos / 1000000L) || !mPredictor.predict(displayMillis)) {
+            if (mPredicting) {
+                mPredicting = false;
+                invalidateIndicator();
+            }
+            return;
+        }
+        float x = mPredictor.getPredictedX();
+        float y = mPredictor.getPredictedY();
+        mPredictedX = mSelection.clampX(x);
+        mPredictedY = mSelection.clampY(y);
+        mPredicting = true;
+        invalidateIndicator();
+
+        if (mProvisionalColorListener != null) {
+            int color = mSelection.peek(x, y);
+            if (color != mProvisionalColor) {
+                mProvisionalColor = color;
+                mProvisionalColorListener.onProvisionalColor(color);
+            }
+        }
+        // keeps following frames without new samples, until the input goes stale
+        schedulePrediction();
+    }
+
+    private void clearPrediction() {
+        mPredictor.reset();
+        if (mPredicting) {
+            mPredicting = false;
+            invalidateIndicator();
+        }
+    }
+
+    private void endGesture() {
+        if (mMetrics != null) {
+            mMetrics.onGestureInvalidations(mGestureInvalidations);
+            mMetrics.onGestureEnd(System.nanoTime());
+        }
+        mGestureInvalidations = 0;
+        mPadGesture = false;
+    }
+
+    private void cancelPendingFrame() {
+        if (mFramePending) {
+            mFramePending = false;
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+        }
+        if (mPredictionPending) {
+            mPredictionPending = false;
+            Choreographer.getInstance().removeFrameCallback(mPredictionCallback);
+        }
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        SavedState state = new SavedState(super.onSaveInstanceState());
+        if (mPendingRestore != null) {
+            // still waiting for its palette, so hand it on unchanged
+            state.mHasSelection = true;
+            state.mFraction = mPendingRestore.mFraction;
+            state.mAlpha = mPendingRestore.mAlpha;
+            state.mPaletteFingerprint = mPendingRestore.mPaletteFingerprint;
+        } else if (mHasSelection) {
+            float fraction = mSelection.getFraction();
+            if (fraction < 0f) {
+                fraction = mSampler.fractionAt(mSelection.getIndicatorX() + 0.5f);
+            }
+            state.mHasSelection = true;
+            state.mFraction = Math.min(Math.max(fraction, 0f), 1f);
+            state.mAlpha = (int) mSelection.getAlpha();
+            state.mPaletteFingerprint = getPaletteFingerprint();
+        }
+        return state;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        if (!savedState.mHasSelection) {
+            return;
+        }
+        if (savedState.mPaletteFingerprint == getPaletteFingerprint()) {
+            restoreSelection(savedState);
         } else {
-            pixelX = mToolbarRect.right - 1;
-            mIndicatorX = pixelX;
+            // the palette may still be compiling; restore once it arrives
+            mPendingRestore = savedState;
+        }
+    }
+
+    /**
+     * Puts back a saved selection, computing its color from the stops without
+     * drawing, and notifies listeners once
+     */
+    private void restoreSelection(SavedState state) {
+        int color = mSelection.select(state.mFraction, state.mAlpha);
+        mHasSelection = true;
+        mPadAnchor = color;
+        if (mPadMode != 0) {
+            followStrip(color);
         }
+        mLastStopIndex = mSelection.getStopIndex();
+        dispatchColor(color);
+        if (mStopSelectedListener != null && mLastStopIndex >= 0) {
+            mStopSelectedListener.onStopSelected(mLastStopIndex, color);
+        }
+        invalidateIndicator();
+    }
 
-        // Set indicator position
-//        mIndicatorX = pixelX;
-//        mIndicatorY = pixelY;
+    /**
+     * Identifies everything a gradient fraction is mapped to a color with
+     */
+    private int getPaletteFingerprint() {
+        int result = Arrays.hashCode(mColors);
+        result = 31 * result + mSampler.getInterpolationSpace().ordinal();
+        StopSegments segments = mSampler.getSegments();
+        return 31 * result + (segments != null ? segments.hashCode() : 0);
+    }
 
-        // Get the colors
-        int pixel = getDrawingCache().getPixel((int) mIndicatorX, (int) mIndicatorY);
-        mSelectedColor = Color.argb((int) mAlpha, Color.red(pixel), Color.green(pixel), Color.blue(pixel));
-        if (mCallback != null) {
-            mCallback.onColorChanged(mSelectedColor);
+    /**
+     * The selection as a gradient fraction and alpha, with the palette it was made on
+     */
+    static class SavedState extends BaseSavedState {
+
+        boolean mHasSelection;
+        float mFraction;
+        int mAlpha;
+        int mPaletteFingerprint;
+
+        SavedState(Parcelable superState) {
+            super(superState);
         }
 
-        invalidate();
+        private SavedState(Parcel in) {
+            super(in);
+            mHasSelection = in.readInt() != 0;
+            mFraction = in.readFloat();
+            mAlpha = in.readInt();
+            mPaletteFingerprint = in.readInt();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeInt(mHasSelection ? 1 : 0);
+            out.writeFloat(mFraction);
+            out.writeInt(mAlpha);
+            out.writeInt(mPaletteFingerprint);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        WindowManager windowManager = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+        float refreshRate = windowManager != null ? windowManager.getDefaultDisplay().getRefreshRate() : 0f;
+        mFrameIntervalNanos = (long) (1000000000L / (refreshRate > 0f ? refreshRate : DEFAULT_REFRESH_RATE));
+        if (mPadStopped && mPadMode != 0) {
+            // tiles finished after detaching were never uploaded
+            anchorPad(mHasSelection ? mPadAnchor : mColors[0]);
+            mPadHandler.post(mPadUpload);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        cancelPendingFrame();
+        endColorTransition(true);
+        // a palette still compiling is left to publish: nothing would resubmit it on reattach
+        stopPad();
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * Stops rendering the pad and drops uploads still queued, until it is anchored again
+     */
+    private void stopPad() {
+        if (mPadRenderer == null) {
+            return;
+        }
+        mPadRenderer.stop();
+        mPadStopped = true;
+        mPadHandler.removeCallbacks(mPadUpload);
+        mPadUploadPending.set(false);
     }
 
     @Override
@@ -445,28 +1772,88 @@ public class ColorPickerToolbar extends View {
 
         float x = event.getX();
         float y = event.getY();
+        long eventTime = event.getEventTime();
 
         int action = MotionEventCompat.getActionMasked(event);
 
         switch (action) {
 
             case (MotionEvent.ACTION_DOWN):
-                Log.d(TAG, "Action was DOWN");
-                changeColor(x, y);
+                if (DEBUG) Log.d(TAG, "Action was DOWN");
+                cancelPendingFrame();
+                mGestureInvalidations = 0;
+                // a gesture stays on the pad or the strip, whichever it started on
+                mPadGesture = mPadMode != 0 && y >= mToolbarRect.bottom + mInternalPadding / 2f;
+                if (mPadGesture) {
+                    changePadColor(x, y);
+                    return true;
+                }
+                if (mPredictTouches) {
+                    mPredictor.reset();
+                    trackTouch(event);
+                    mProvisionalColor = 0;
+                }
+                changeColor(x, y, eventTime);
                 return true;
             case (MotionEvent.ACTION_MOVE):
-                Log.d(TAG, "Action was MOVE" + " x= " + x + " y = " + y);
-                changeColor(x, y);
+                if (DEBUG) Log.d(TAG, "Action was MOVE" + " x= " + x + " y = " + y);
+                if (mPadGesture) {
+                    changePadColor(x, y);
+                    return true;
+                }
+                if (mPredictTouches) {
+                    trackTouch(event);
+                }
+                switch (mTouchDispatchMode) {
+                    case 1: // FRAME_COALESCED
+                        scheduleChangeColor(x, y, eventTime);
+                        break;
+                    case 2: // HISTORICAL
+                        for (int h = 0; h < event.getHistorySize(); h++) {
+                            changeColor(event.getHistoricalX(h), event.getHistoricalY(h), event.getHistoricalEventTime(h));
+                        }
+                        changeColor(x, y, eventTime);
+                        break;
+                    default:
+                        changeColor(x, y, eventTime);
+                        break;
+                }
+                if (mTouchDispatchMode != 1) {
+                    // coalesced positions are predicted from their own frame callback
+                    schedulePrediction();
+                }
                 return true;
             case (MotionEvent.ACTION_UP):
-                Log.d(TAG, "Action was UP");
-                changeColor(x, y);
+                if (DEBUG) Log.d(TAG, "Action was UP");
+                // The final position always wins over anything still queued
+                cancelPendingFrame();
+                mPredictor.reset();
+                if (mPadGesture) {
+                    changePadColor(x, y);
+                } else {
+                    changeColor(x, y, eventTime);
+                }
+                if (mPredictTouches && mProvisionalColorListener != null) {
+                    mProvisionalColorListener.onColorCommitted(mSelection.getColor());
+                }
+                if (!mSubscriptions.isEmpty()) {
+                    for (ColorSubscription subscription : mSubscriptions) {
+                        subscription.commit(mSelection.getColor());
+                    }
+                }
+                if (mColorHistory != null) {
+                    mColorHistory.addRecent(mSelection.getColor());
+                }
+                endGesture();
                 return true;
             case (MotionEvent.ACTION_CANCEL):
-                Log.d(TAG, "Action was CANCEL");
+                if (DEBUG) Log.d(TAG, "Action was CANCEL");
+                cancelPendingFrame();
+                clearPrediction();
+                endGesture();
                 return true;
             case (MotionEvent.ACTION_OUTSIDE):
-                Log.d(TAG, "Movement occurred outside bounds " +
+                if (DEBUG) Log.d(TAG, "Movement occurred outside bounds " +
                         "of current screen element");
                 return true;
             default:
@@ -0,0 +1,184 @@
+package com.kdotj.color_picker_toolbar;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A conflating subscription to the colors picked on a {@link ColorPickerToolbar}.
+ * <p>
+ * Colors are handed over latest-value-wins: while a delivery is queued on the
+ * subscriber's Executor, newer colors replace the pending one instead of queueing
+ * behind it, so a slow subscriber sees fewer, fresher colors and never backs up
+ * touch handling. Colors closer than the subscriber's minimum delta E (Euclidean distance
+ * in OKLab) to the last accepted one are dropped. When a gesture ends, the final
+ * color is delivered and followed by {@link Subscriber#onGestureCommitted(int)}.
+ * <p>
+ * Publishing reuses a single Runnable and never allocates.
+ */
+
+public final class ColorSubscription {
+
+    public interface Subscriber {
+        /**
+         * @param color latest picked color; intermediate colors may have been skipped
+         */
+        void onColor(int color);
+
+        /**
+         * Called once per gesture, after the final color was delivered
+         *
+         * @param color the final color of the gesture
+         */
+        void onGestureCommitted(int color);
+    }
+
+    /**
+     * Set above the 32 color bits while a slot holds a value
+     */
+    private static final long PRESENT = 1L << 32;
+
+    private final Subscriber mSubscriber;
+    private final Executor mExecutor;
+    private final float mMinDeltaSquared;
+    private final List<ColorSubscription> mOwner;
+
+    /**
+     * Accepted color waiting for delivery, and the commit waiting after it
+     */
+    private final AtomicLong mPending = new AtomicLong();
+    private final AtomicLong mCommit = new AtomicLong();
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+    private volatile boolean mCancelled;
+
+    /**
+     * Publishing thread only: OKLab of the last accepted color, for the delta E filter
+     */
+    private boolean mHasAccepted;
+    private int mAcceptedAlpha;
+    private final float[] mAccepted = new float[3];
+    private final float[] mCandidate = new float[3];
+
+    /**
+     * Delivering thread only
+     */
+    private boolean mHasDelivered;
+    private int mDelivered;
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    ColorSubscription(Subscriber subscriber, Executor executor, float minDeltaE, List<ColorSubscription> owner) {
+        if (subscriber == null) {
+            throw new IllegalArgumentException("Subscriber must not be null");
+        }
+        mSubscriber = subscriber;
+        mExecutor = executor;
+        mMinDeltaSquared = minDeltaE > 0f ? minDeltaE * minDeltaE : 0f;
+        mOwner = owner;
+    }
+
+    /**
+     * Stops deliveries; a delivery already running completes
+     */
+    public void cancel() {
+        mCancelled = true;
+        if (mOwner != null) {
+            mOwner.remove(this);
+        }
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Offers a color picked during a gesture
+     */
+    void publish(int color) {
+        if (mCancelled || !accept(color)) {
+            return;
+        }
+        mPending.set(PRESENT | (color & 0xFFFFFFFFL));
+        schedule();
+    }
+
+    /**
+     * Ends a gesture: the final color is delivered regardless of delta E, then the commit
+     */
+    void commit(int color) {
+        if (mCancelled) {
+            return;
+        }
+        accept(color);
+        long value = PRESENT | (color & 0xFFFFFFFFL);
+        mPending.set(value);
+        mCommit.set(value);
+        schedule();
+    }
+
+    /**
+     * Applies the delta E filter, remembering the color if it passes
+     */
+    private boolean accept(int color) {
+        if (mMinDeltaSquared > 0f) {
+            ColorSpaces.toOkLab(color, mCandidate);
+            if (mHasAccepted) {
+                float dl = mCandidate[0] - mAccepted[0];
+                float da = mCandidate[1] - mAccepted[1];
+                float db = mCandidate[2] - mAccepted[2];
+                // alpha is outside OKLab, so an alpha-only change always passes
+                if (dl * dl + da * da + db * db < mMinDeltaSquared && (color >>> 24) == mAcceptedAlpha) {
+                    return false;
+                }
+            }
+            mAccepted[0] = mCandidate[0];
+            mAccepted[1] = mCandidate[1];
+            mAccepted[2] = mCandidate[2];
+            mAcceptedAlpha = color >>> 24;
+            mHasAccepted = true;
+        }
+        return true;
+    }
+
+    private void schedule() {
+        if (mExecutor == null) {
+            drain();
+        } else if (mScheduled.compareAndSet(false, true)) {
+            mExecutor.execute(mDrain);
+        }
+    }
+
+    private void drain() {
+        // cleared first, so a color published while draining schedules another pass
+        mScheduled.set(false);
+        if (mCancelled) {
+            return;
+        }
+        // commit() fills the pending slot before the commit slot, so reading them in the
+        // opposite order can never see a commit whose color has not been published yet
+        long commit = mCommit.getAndSet(0L);
+        long pending = mPending.getAndSet(0L);
+        if (commit != 0L) {
+            // the commit carries its color, in case the next gesture already replaced it as pending
+            deliver((int) commit);
+            mSubscriber.onGestureCommitted((int) commit);
+        }
+        if (pending != 0L) {
+            deliver((int) pending);
+        }
+    }
+
+    private void deliver(int color) {
+        if (!mHasDelivered || color != mDelivered) {
+            mHasDelivered = true;
+            mDelivered = color;
+            mSubscriber.onColor(color);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.kdotj.color_picker_toolbar;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import java.util.Arrays;
+
+/**
+ * Process-wide cache of rendered gradient layers, shared by every
+ * {@link ColorPickerToolbar} so identical pickers (same palette, size, tile
+ * mode, interpolation space and segments) render their gradient once.
+ * <p>
+ * Entries are evicted least recently used first once their pixels exceed the
+ * byte budget. Bitmaps handed out are shared and must never be modified or recycled.
+ */
+
+public final class GradientCache {
+
+    /**
+     * Default budget, enough for a few hundred phone-width gradient rows
+     */
+    public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    private static GradientCache sInstance;
+
+    private final LruCache<Key, Bitmap> mCache;
+
+    /**
+     * Reused for lookups so a hit does not copy the palette
+     */
+    private final Key mProbe = new Key();
+    private int[] mRow = new int[0];
+
+    public static synchronized GradientCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new GradientCache(DEFAULT_MAX_BYTES);
+        }
+        return sInstance;
+    }
+
+    GradientCache(int maxBytes) {
+        mCache = new LruCache<Key, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the gradient layer for a sampler, rendering and caching it on a miss
+     *
+     * @param sampler sampler configured with the palette, extent, tile mode and space to render
+     * @param colors  the palette the sampler was configured with, used as part of the key
+     * @param left    first pixel column of the layer
+     * @param width   layer width in pixels
+     * @param height  layer height in pixels
+     * @return shared, read-only layer bitmap
+     */
+    public synchronized Bitmap getLayer(GradientSampler sampler, int[] colors, int left, int width, int height) {
+        int paletteHash = Arrays.hashCode(colors);
+        mProbe.set(colors, paletteHash, sampler.getOrigin(), sampler.getLength(), sampler.getTileMode(),
+                sampler.getInterpolationSpace(), sampler.getSegments(), left, width, height);
+        Bitmap layer = mCache.get(mProbe);
+        if (layer != null) {
+            return layer;
+        }
+
+        if (mRow.length < width) {
+            mRow = new int[width];
+        }
+        sampler.fillRow(mRow, 0, left, width);
+        layer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        for (int y = 0; y < height; y++) {
+            layer.setPixels(mRow, 0, width, 0, y, width, 1);
+        }
+
+        Key key = new Key();
+        key.set(colors.clone(), paletteHash, sampler.getOrigin(), sampler.getLength(), sampler.getTileMode(),
+                sampler.getInterpolationSpace(), sampler.getSegments(), left, width, height);
+        mCache.put(key, layer);
+        return layer;
+    }
+
+    /**
+     * Changes the byte budget, evicting entries immediately if it shrank
+     */
+    public synchronized void setMaxBytes(int maxBytes) {
+        mCache.resize(maxBytes);
+    }
+
+    public synchronized int getMaxBytes() {
+        return mCache.maxSize();
+    }
+
+    /**
+     * @return bytes of pixel data currently cached
+     */
+    public synchronized int getSizeBytes() {
+        return mCache.size();
+    }
+
+    public synchronized int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    public synchronized int getMissCount() {
+        return mCache.missCount();
+    }
+
+    public synchronized int getEvictionCount() {
+        return mCache.evictionCount();
+    }
+
+    public synchronized void clear() {
+        mCache.evictAll();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "GradientCache[bytes=" + getSizeBytes() + "/" + getMaxBytes()
+                + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private static final class Key {
+
+        int[] mColors;
+        int mHash;
+        float mOrigin;
+        float mLength;
+        GradientSampler.TileMode mTileMode;
+        InterpolationSpace mSpace;
+        StopSegments mSegments;
+        int mLeft;
+        int mWidth;
+        int mHeight;
+
+        void set(int[] colors, int paletteHash, float origin, float length, GradientSampler.TileMode tileMode,
+                 InterpolationSpace space, StopSegments segments, int left, int width, int height) {
+            mColors = colors;
+            mOrigin = origin;
+            mLength = length;
+            mTileMode = tileMode;
+            mSpace = space;
+            mSegments = segments;
+            mLeft = left;
+            mWidth = width;
+            mHeight = height;
+
+            int hash = paletteHash;
+            hash = 31 * hash + Float.floatToIntBits(origin);
+            hash = 31 * hash + Float.floatToIntBits(length);
+            hash = 31 * hash + tileMode.ordinal();
+            hash = 31 * hash + space.ordinal();
+            hash = 31 * hash + (segments != null ? segments.hashCode() : 0);
+            hash = 31 * hash + left;
+            hash = 31 * hash + width;
+            hash = 31 * hash + height;
+            mHash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return mHash == other.mHash
+                    && mOrigin == other.mOrigin
+                    && mLength == other.mLength
+                    && mTileMode == other.mTileMode
+                    && mSpace == other.mSpace
+                    && (mSegments == null ? other.mSegments == null : mSegments.equals(other.mSegments))
+                    && mLeft == other.mLeft
+                    && mWidth == other.mWidth
+                    && mHeight == other.mHeight
+                    && Arrays.equals(mColors, other.mColors);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+    }
+}
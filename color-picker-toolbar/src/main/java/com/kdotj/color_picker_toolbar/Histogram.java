@@ -0,0 +1,136 @@
+package com.kdotj.color_picker_toolbar;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative longs with power-of-two buckets.
+ * <p>
+ * Bucket 0 counts zeros and bucket {@code i} counts values in
+ * [2<sup>i-1</sup>, 2<sup>i</sup>), so recording is a leading-zero count and an
+ * atomic increment. It is safe to record from one thread while reading from another.
+ */
+
+public class Histogram {
+
+    public static final int BUCKET_COUNT = 64;
+
+    private final String mName;
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMin = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong mMax = new AtomicLong(Long.MIN_VALUE);
+
+    public Histogram(String name) {
+        mName = name;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mBuckets.incrementAndGet(bucketFor(value));
+        mCount.incrementAndGet();
+        mSum.addAndGet(value);
+
+        long min;
+        while (value < (min = mMin.get()) && !mMin.compareAndSet(min, value)) {
+            // retry
+        }
+        long max;
+        while (value > (max = mMax.get()) && !mMax.compareAndSet(max, value)) {
+            // retry
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getSum() {
+        return mSum.get();
+    }
+
+    public long getMin() {
+        return getCount() == 0 ? 0 : mMin.get();
+    }
+
+    public long getMax() {
+        return getCount() == 0 ? 0 : mMax.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getSum() / count;
+    }
+
+    /**
+     * Estimates a percentile as the upper bound of the bucket it falls in
+     *
+     * @param percentile percentile in [0, 100]
+     * @return an upper bound for the value at that percentile, capped at the max
+     */
+    public long getPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * Math.min(Math.max(percentile, 0), 100) / 100d);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= rank && seen > 0) {
+                return Math.min(bucketUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Copies the bucket counts, for export to an external telemetry system
+     *
+     * @param out array of at least {@link #BUCKET_COUNT} entries
+     */
+    public void getBucketCounts(long[] out) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            out[i] = mBuckets.get(i);
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mSum.set(0);
+        mMin.set(Long.MAX_VALUE);
+        mMax.set(Long.MIN_VALUE);
+    }
+
+    /**
+     * Exclusive upper bound of the values counted in a bucket
+     */
+    public static long bucketUpperBound(int bucket) {
+        return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    static int bucketFor(long value) {
+        return BUCKET_COUNT - Long.numberOfLeadingZeros(value);
+    }
+
+    @Override
+    public String toString() {
+        return mName + " count=" + getCount()
+                + " min=" + getMin()
+                + " mean=" + (long) getMean()
+                + " p50=" + getPercentile(50)
+                + " p90=" + getPercentile(90)
+                + " p99=" + getPercentile(99)
+                + " max=" + getMax();
+    }
+}
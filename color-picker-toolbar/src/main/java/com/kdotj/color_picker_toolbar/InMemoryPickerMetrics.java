@@ -0,0 +1,109 @@
+package com.kdotj.color_picker_toolbar;
+
+import java.io.IOException;
+
+/**
+ * Default {@link PickerMetrics} that keeps every sample in {@link Histogram}s,
+ * to be dumped from tests or read out and exported to a telemetry system.
+ */
+
+public class InMemoryPickerMetrics implements PickerMetrics {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final Histogram mTouchToCallbackLatency = new Histogram("touchToCallbackLatencyNanos");
+    private final Histogram mDrawDuration = new Histogram("drawDurationNanos");
+    private final Histogram mInvalidationsPerGesture = new Histogram("invalidationsPerGesture");
+    private final Histogram mResolvesPerSecond = new Histogram("colorResolvesPerSecond");
+
+    private long mWindowStart = -1;
+    private int mWindowResolves;
+
+    @Override
+    public void onTouchToCallbackLatency(long latencyNanos) {
+        mTouchToCallbackLatency.record(latencyNanos);
+    }
+
+    @Override
+    public void onDrawDuration(long durationNanos) {
+        mDrawDuration.record(durationNanos);
+    }
+
+    @Override
+    public void onGestureInvalidations(int invalidations) {
+        mInvalidationsPerGesture.record(invalidations);
+    }
+
+    @Override
+    public void onColorResolved(long timestampNanos) {
+        if (mWindowStart < 0) {
+            mWindowStart = timestampNanos;
+        } else if (timestampNanos - mWindowStart >= NANOS_PER_SECOND) {
+            // close the full one second window and start the next with this resolve
+            mResolvesPerSecond.record(mWindowResolves);
+            mWindowStart = timestampNanos;
+            mWindowResolves = 0;
+        }
+        mWindowResolves++;
+    }
+
+    @Override
+    public void onGestureEnd(long timestampNanos) {
+        if (mWindowStart < 0) {
+            return;
+        }
+        long elapsed = timestampNanos - mWindowStart;
+        if (elapsed > 0) {
+            // scale the partial window of a short gesture to a per second rate
+            mResolvesPerSecond.record(mWindowResolves * NANOS_PER_SECOND / elapsed);
+        }
+        mWindowStart = -1;
+        mWindowResolves = 0;
+    }
+
+    public Histogram getTouchToCallbackLatency() {
+        return mTouchToCallbackLatency;
+    }
+
+    public Histogram getDrawDuration() {
+        return mDrawDuration;
+    }
+
+    public Histogram getInvalidationsPerGesture() {
+        return mInvalidationsPerGesture;
+    }
+
+    public Histogram getResolvesPerSecond() {
+        return mResolvesPerSecond;
+    }
+
+    public void reset() {
+        mTouchToCallbackLatency.reset();
+        mDrawDuration.reset();
+        mInvalidationsPerGesture.reset();
+        mResolvesPerSecond.reset();
+        mWindowStart = -1;
+        mWindowResolves = 0;
+    }
+
+    /**
+     * Writes one summary line per histogram
+     */
+    public void dump(Appendable out) throws IOException {
+        out.append(mTouchToCallbackLatency.toString()).append('\n');
+        out.append(mDrawDuration.toString()).append('\n');
+        out.append(mInvalidationsPerGesture.toString()).append('\n');
+        out.append(mResolvesPerSecond.toString()).append('\n');
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            dump(builder);
+        } catch (IOException e) {
+            // StringBuilder does not throw
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,137 @@
+package com.kdotj.color_picker_toolbar;
+
+/**
+ * Fixed-capacity set of ints with open addressing and linear probing, so
+ * membership tests and updates are O(1) without boxing or allocation.
+ * <p>
+ * Removal shifts the following entries of a probe run back instead of leaving
+ * tombstones, so the table never degrades however often entries churn.
+ */
+
+final class IntSet {
+
+    /**
+     * Marks a free slot; the key 0 itself is tracked by mHasZero
+     */
+    private static final int FREE = 0;
+
+    private final int[] mKeys;
+    private final int mMask;
+    private final int mShift;
+    private final int mMaxSize;
+    private boolean mHasZero;
+    private int mSize;
+
+    /**
+     * @param maxSize most keys the set will hold; the table is kept at most half full
+     */
+    IntSet(int maxSize) {
+        int tableSize = 2;
+        while (tableSize < maxSize * 2) {
+            tableSize <<= 1;
+        }
+        mKeys = new int[tableSize];
+        mMask = tableSize - 1;
+        mShift = Integer.numberOfLeadingZeros(tableSize) + 1;
+        mMaxSize = maxSize;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    boolean contains(int key) {
+        if (key == FREE) {
+            return mHasZero;
+        }
+        for (int slot = slot(key); ; slot = (slot + 1) & mMask) {
+            int k = mKeys[slot];
+            if (k == key) {
+                return true;
+            }
+            if (k == FREE) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return true if the key was added, false if it was already present
+     * @throws IllegalStateException if the set is full
+     */
+    boolean add(int key) {
+        if (key == FREE) {
+            if (mHasZero) {
+                return false;
+            }
+            checkCapacity();
+            mHasZero = true;
+            mSize++;
+            return true;
+        }
+        int slot = slot(key);
+        while (mKeys[slot] != FREE) {
+            if (mKeys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mMask;
+        }
+        checkCapacity();
+        mKeys[slot] = key;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * @return true if the key was present
+     */
+    boolean remove(int key) {
+        if (key == FREE) {
+            if (!mHasZero) {
+                return false;
+            }
+            mHasZero = false;
+            mSize--;
+            return true;
+        }
+        int slot = slot(key);
+        while (mKeys[slot] != key) {
+            if (mKeys[slot] == FREE) {
+                return false;
+            }
+            slot = (slot + 1) & mMask;
+        }
+        mSize--;
+
+        // shift later entries of the run back into the gap if their home slot allows it
+        int gap = slot;
+        for (int next = (gap + 1) & mMask; mKeys[next] != FREE; next = (next + 1) & mMask) {
+            int home = slot(mKeys[next]);
+            if (((next - home) & mMask) >= ((next - gap) & mMask)) {
+                mKeys[gap] = mKeys[next];
+                gap = next;
+            }
+        }
+        mKeys[gap] = FREE;
+        return true;
+    }
+
+    void clear() {
+        for (int i = 0; i < mKeys.length; i++) {
+            mKeys[i] = FREE;
+        }
+        mHasZero = false;
+        mSize = 0;
+    }
+
+    private void checkCapacity() {
+        if (mSize >= mMaxSize) {
+            throw new IllegalStateException("IntSet is full");
+        }
+    }
+
+    private int slot(int key) {
+        // Fibonacci hashing: the top bits of the product mix in every bit of the color
+        return (key * 0x9E3779B9) >>> mShift;
+    }
+}
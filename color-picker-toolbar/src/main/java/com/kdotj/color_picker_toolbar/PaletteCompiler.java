@@ -0,0 +1,171 @@
+package com.kdotj.color_picker_toolbar;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Prepares palettes for a {@link ColorPickerToolbar} off the main thread.
+ * <p>
+ * Parsing, validation, sampler set-up and rendering of the gradient layer all
+ * happen on a background Executor; the finished {@link Compiled} palette is then
+ * handed to the main thread in one piece. Submitting a new palette supersedes any
+ * still in flight, so only the latest one is ever published.
+ */
+
+class PaletteCompiler {
+
+    private static final String TAG = PaletteCompiler.class.getSimpleName();
+
+    private static ExecutorService sDefaultExecutor;
+
+    /**
+     * Produces the palette colors, called on the background thread
+     */
+    interface Source {
+        int[] load();
+    }
+
+    interface Callback {
+        void onPaletteCompiled(Compiled palette);
+    }
+
+    /**
+     * A parsed palette with everything the Toolbar needs to switch to it
+     */
+    static final class Compiled {
+
+        final int[] mColors;
+        final GradientSampler mSampler;
+        final Bitmap mLayer;
+        final int mLayerLeft;
+        final int mLayerWidth;
+
+        /**
+         * Interpolation space the layer was rendered in
+         */
+        final InterpolationSpace mSpace;
+
+        Compiled(int[] colors, GradientSampler sampler, Bitmap layer, int layerLeft, int layerWidth,
+                 InterpolationSpace space) {
+            mColors = colors;
+            mSampler = sampler;
+            mLayer = layer;
+            mLayerLeft = layerLeft;
+            mLayerWidth = layerWidth;
+            mSpace = space;
+        }
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private Executor mExecutor;
+
+    /**
+     * Incremented on the main thread for every submission; a result is only
+     * published if no newer submission was made in the meantime
+     */
+    private volatile int mGeneration;
+
+    static synchronized Executor getDefaultExecutor() {
+        if (sDefaultExecutor == null) {
+            sDefaultExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ColorPickerToolbar-palette");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return sDefaultExecutor;
+    }
+
+    void setExecutor(Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Compiles a palette synchronously, superseding anything in flight
+     */
+    Compiled compileNow(int[] colors, InterpolationSpace space, float length, int layerLeft, int layerWidth) {
+        mGeneration++;
+        return compile(colors, space, length, layerLeft, layerWidth);
+    }
+
+    /**
+     * Compiles a palette in the background and publishes it on the main thread
+     *
+     * @param source     produces the colors, on the background thread
+     * @param space      interpolation space to prepare the sampler for
+     * @param length     gradient length to prepare the sampler for
+     * @param layerLeft  first pixel column of the gradient layer
+     * @param layerWidth width of the gradient layer, or 0 to skip pre-rendering it
+     * @param callback   called on the main thread, unless superseded or the palette is invalid
+     */
+    void submit(final Source source, final InterpolationSpace space, final float length,
+                final int layerLeft, final int layerWidth, final Callback callback) {
+        final int generation = ++mGeneration;
+        Executor executor = mExecutor != null ? mExecutor : getDefaultExecutor();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) {
+                    return;
+                }
+
+                final Compiled compiled;
+                try {
+                    compiled = compile(source.load(), space, length, layerLeft, layerWidth);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Could not compile palette, keeping the current one", e);
+                    return;
+                }
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            callback.onPaletteCompiled(compiled);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drops any palette still being compiled
+     */
+    void cancel() {
+        mGeneration++;
+    }
+
+    private static Compiled compile(int[] colors, InterpolationSpace space, float length,
+                                    int layerLeft, int layerWidth) {
+        validate(colors);
+
+        GradientSampler sampler = new GradientSampler();
+        sampler.setInterpolationSpace(space);
+        sampler.setColors(colors);
+        sampler.setLength(length);
+
+        Bitmap layer = null;
+        if (layerWidth > 0) {
+            layer = GradientCache.getInstance().getLayer(sampler, colors, layerLeft, layerWidth, 1);
+        }
+        return new Compiled(colors, sampler, layer, layerLeft, layerWidth, space);
+    }
+
+    static void validate(int[] colors) {
+        if (colors == null || colors.length == 0) {
+            throw new IllegalArgumentException("A palette needs at least one color");
+        }
+    }
+}
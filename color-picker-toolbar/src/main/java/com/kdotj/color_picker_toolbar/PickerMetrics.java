@@ -0,0 +1,47 @@
+package com.kdotj.color_picker_toolbar;
+
+/**
+ * Receives performance samples from a {@link ColorPickerToolbar}.
+ * <p>
+ * Set one with {@link ColorPickerToolbar#setMetrics(PickerMetrics)}; with none set
+ * the Toolbar takes no timestamps at all. Callbacks arrive on the UI thread and
+ * should be as cheap as recording a number.
+ */
+
+public interface PickerMetrics {
+
+    /**
+     * Time from a touch sample being generated to the color listeners being dispatched
+     *
+     * @param latencyNanos latency in nanoseconds
+     */
+    void onTouchToCallbackLatency(long latencyNanos);
+
+    /**
+     * Time spent inside one {@code onDraw} pass
+     *
+     * @param durationNanos duration in nanoseconds
+     */
+    void onDrawDuration(long durationNanos);
+
+    /**
+     * Number of invalidations requested between ACTION_DOWN and ACTION_UP/CANCEL
+     *
+     * @param invalidations invalidation count for the finished gesture
+     */
+    void onGestureInvalidations(int invalidations);
+
+    /**
+     * A color was resolved from a touch position
+     *
+     * @param timestampNanos {@link System#nanoTime()} of the resolve
+     */
+    void onColorResolved(long timestampNanos);
+
+    /**
+     * The current gesture ended, so any rate being tracked over it can be closed off
+     *
+     * @param timestampNanos {@link System#nanoTime()} of the end of the gesture
+     */
+    void onGestureEnd(long timestampNanos);
+}
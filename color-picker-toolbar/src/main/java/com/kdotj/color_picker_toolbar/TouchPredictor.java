@@ -0,0 +1,175 @@
+package com.kdotj.color_picker_toolbar;
+
+/**
+ * Extrapolates where the finger will be a short time ahead, so the indicator can be
+ * drawn where the finger is when the frame reaches the screen rather than where it
+ * was when the last touch event was sampled.
+ * <p>
+ * Like {@code VelocityTracker}, velocity is a least squares fit over the most recent
+ * samples within a short horizon; the prediction moves the newest sample along it.
+ * Samples live in a fixed ring buffer, so tracking and predicting never allocate.
+ */
+
+public class TouchPredictor {
+
+    /**
+     * Samples kept for the fit
+     */
+    private static final int HISTORY = 8;
+
+    /**
+     * Samples older than this, relative to the newest, are left out of the fit
+     */
+    private static final long HORIZON_MILLIS = 80;
+
+    /**
+     * With no sample for this long the finger is treated as resting and nothing is extrapolated
+     */
+    private static final long STALE_MILLIS = 40;
+
+    /**
+     * Predictions further ahead than this overshoot more than they help
+     */
+    public static final long MAX_LOOKAHEAD_MILLIS = 32;
+
+    private final long[] mTimes = new long[HISTORY];
+    private final float[] mX = new float[HISTORY];
+    private final float[] mY = new float[HISTORY];
+    private int mNewest = -1;
+    private int mCount;
+
+    private float mVelocityX;
+    private float mVelocityY;
+    private float mPredictedX;
+    private float mPredictedY;
+
+    /**
+     * Forgets all samples, e.g. when a gesture starts
+     */
+    public void reset() {
+        mNewest = -1;
+        mCount = 0;
+        mVelocityX = 0f;
+        mVelocityY = 0f;
+    }
+
+    /**
+     * Adds a touch sample; samples must be added in time order
+     *
+     * @param timeMillis event time in milliseconds
+     */
+    public void addSample(long timeMillis, float x, float y) {
+        mNewest = (mNewest + 1) % HISTORY;
+        mTimes[mNewest] = timeMillis;
+        mX[mNewest] = x;
+        mY[mNewest] = y;
+        if (mCount < HISTORY) {
+            mCount++;
+        }
+    }
+
+    /**
+     * Estimates the touch position at a time after the newest sample. The result is
+     * read with {@link #getPredictedX()} and {@link #getPredictedY()}.
+     *
+     * @param timeMillis time to predict for, clamped to {@link #MAX_LOOKAHEAD_MILLIS}
+     *                   after the newest sample
+     * @return false if there are no samples to predict from
+     */
+    public boolean predict(long timeMillis) {
+        if (mCount == 0) {
+            return false;
+        }
+        computeVelocity();
+        long lookahead = timeMillis - mTimes[mNewest];
+        if (lookahead < 0) {
+            lookahead = 0;
+        } else if (lookahead > MAX_LOOKAHEAD_MILLIS) {
+            lookahead = MAX_LOOKAHEAD_MILLIS;
+        }
+        if (isStale(timeMillis)) {
+            lookahead = 0;
+        }
+        mPredictedX = mX[mNewest] + mVelocityX * lookahead;
+        mPredictedY = mY[mNewest] + mVelocityY * lookahead;
+        return true;
+    }
+
+    /**
+     * @param timeMillis current time, on the same clock as the samples
+     * @return true if there are no samples, or none recent enough at this time to extrapolate from
+     */
+    public boolean isStale(long timeMillis) {
+        return mCount == 0 || timeMillis - mTimes[mNewest] > STALE_MILLIS;
+    }
+
+    public float getPredictedX() {
+        return mPredictedX;
+    }
+
+    public float getPredictedY() {
+        return mPredictedY;
+    }
+
+    /**
+     * @return horizontal velocity of the last prediction, in pixels per millisecond
+     */
+    public float getVelocityX() {
+        return mVelocityX;
+    }
+
+    /**
+     * @return vertical velocity of the last prediction, in pixels per millisecond
+     */
+    public float getVelocityY() {
+        return mVelocityY;
+    }
+
+    /**
+     * Least squares slope of position over time for the samples within the horizon
+     */
+    private void computeVelocity() {
+        long newestTime = mTimes[mNewest];
+        int used = 0;
+        float sumT = 0f;
+        float sumX = 0f;
+        float sumY = 0f;
+        for (int i = 0; i < mCount; i++) {
+            int index = (mNewest - i + HISTORY) % HISTORY;
+            long age = newestTime - mTimes[index];
+            if (age > HORIZON_MILLIS) {
+                break;
+            }
+            sumT -= age;
+            sumX += mX[index];
+            sumY += mY[index];
+            used++;
+        }
+        if (used < 2) {
+            mVelocityX = 0f;
+            mVelocityY = 0f;
+            return;
+        }
+
+        float meanT = sumT / used;
+        float meanX = sumX / used;
+        float meanY = sumY / used;
+        float varianceT = 0f;
+        float covarianceX = 0f;
+        float covarianceY = 0f;
+        for (int i = 0; i < used; i++) {
+            int index = (mNewest - i + HISTORY) % HISTORY;
+            float t = (mTimes[index] - newestTime) - meanT;
+            varianceT += t * t;
+            covarianceX += t * (mX[index] - meanX);
+            covarianceY += t * (mY[index] - meanY);
+        }
+        if (varianceT == 0f) {
+            mVelocityX = 0f;
+            mVelocityY = 0f;
+        } else {
+            mVelocityX = covarianceX / varianceT;
+            mVelocityY = covarianceY / varianceT;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.kdotj.color_picker_toolbar;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures bytes allocated and CPU time used by the current thread, using the HotSpot thread MXBean
+ */
+final class AllocationBudget {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Runs before measuring, enough for the JIT to compile the task's loops
+     */
+    private static final int WARMUP_RUNS = 20;
+
+    /**
+     * Measured runs; a compilation or deoptimization landing in one of them allocates
+     * bookkeeping on the measured thread, so only the quietest run counts
+     */
+    private static final int MEASURED_RUNS = 5;
+
+    /**
+     * Warms the task up, then returns the fewest bytes allocated by any of several runs
+     */
+    static long measure(Runnable task) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            task.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long before = THREADS.getThreadAllocatedBytes(threadId);
+            task.run();
+            least = Math.min(least, THREADS.getThreadAllocatedBytes(threadId) - before);
+        }
+        return least;
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far
+     */
+    static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @return CPU time used by the current thread so far, in nanoseconds
+     */
+    static long cpuNanos() {
+        return THREADS.getCurrentThreadCpuTime();
+    }
+
+    private AllocationBudget() {}
+}
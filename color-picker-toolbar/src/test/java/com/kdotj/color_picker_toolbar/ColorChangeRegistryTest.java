@@ -0,0 +1,126 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class ColorChangeRegistryTest {
+
+    @Test
+    public void add_sameListenerTwice_registersItOnce() throws Exception {
+        ColorChangeRegistry registry = new ColorChangeRegistry();
+        RecordingListener listener = new RecordingListener();
+
+        registry.add(listener, null);
+        registry.add(listener, null);
+        registry.dispatch(0xFF123456);
+
+        assertEquals(1, listener.mColors.size());
+        assertTrue(registry.remove(listener));
+        assertTrue(registry.isEmpty());
+        assertFalse(registry.remove(listener));
+    }
+
+    @Test
+    public void add_sameListenerWithExecutor_replacesExecutor() throws Exception {
+        ColorChangeRegistry registry = new ColorChangeRegistry();
+        QueueExecutor executor = new QueueExecutor();
+        RecordingListener listener = new RecordingListener();
+
+        registry.add(listener, null);
+        registry.add(listener, executor);
+        registry.dispatch(0xFF123456);
+
+        assertTrue(listener.mColors.isEmpty());
+        executor.runAll();
+        assertEquals(1, listener.mColors.size());
+    }
+
+    @Test
+    public void dispatch_removalDuringDispatch_keepsThatDispatchIntact() throws Exception {
+        final ColorChangeRegistry registry = new ColorChangeRegistry();
+        final RecordingListener second = new RecordingListener();
+        final RecordingListener third = new RecordingListener();
+        RecordingListener first = new RecordingListener() {
+            @Override
+            public void onColorChanged(int color) {
+                super.onColorChanged(color);
+                registry.remove(this);
+                registry.remove(second);
+            }
+        };
+        registry.add(first, null);
+        registry.add(second, null);
+        registry.add(third, null);
+
+        registry.dispatch(0xFF000001);
+        registry.dispatch(0xFF000002);
+
+        // the first dispatch still reaches everyone registered when it started
+        assertEquals(1, first.mColors.size());
+        assertEquals(1, second.mColors.size());
+        assertEquals(2, third.mColors.size());
+        assertEquals(0xFF000002, (int) third.mColors.get(1));
+    }
+
+    @Test
+    public void dispatch_withExecutor_runsListenerOnIt() throws Exception {
+        ColorChangeRegistry registry = new ColorChangeRegistry();
+        QueueExecutor executor = new QueueExecutor();
+        RecordingListener direct = new RecordingListener();
+        RecordingListener queued = new RecordingListener();
+        registry.add(direct, null);
+        registry.add(queued, executor);
+
+        assertTrue(registry.dispatch(0xFF00FF00));
+        assertTrue(registry.dispatch(0xFF0000FF));
+
+        assertEquals(2, direct.mColors.size());
+        assertTrue(queued.mColors.isEmpty());
+        assertEquals(2, executor.mQueue.size());
+        executor.runAll();
+        assertEquals(0xFF00FF00, (int) queued.mColors.get(0));
+        assertEquals(0xFF0000FF, (int) queued.mColors.get(1));
+    }
+
+    @Test
+    public void dispatch_sameColorTwice_notifiesOnce() throws Exception {
+        ColorChangeRegistry registry = new ColorChangeRegistry();
+        RecordingListener listener = new RecordingListener();
+        registry.add(listener, null);
+
+        assertTrue(registry.dispatch(0));
+        assertFalse(registry.dispatch(0));
+        assertTrue(registry.dispatch(0xFF000000));
+
+        assertEquals(2, listener.mColors.size());
+    }
+
+    private static class RecordingListener implements ColorPickerToolbar.ColorChangeListener {
+        final List<Integer> mColors = new ArrayList<>();
+
+        @Override
+        public void onColorChanged(int color) {
+            mColors.add(color);
+        }
+    }
+
+    private static final class QueueExecutor implements Executor {
+        final List<Runnable> mQueue = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mQueue.add(command);
+        }
+
+        void runAll() {
+            while (!mQueue.isEmpty()) {
+                mQueue.remove(0).run();
+            }
+        }
+    }
+}
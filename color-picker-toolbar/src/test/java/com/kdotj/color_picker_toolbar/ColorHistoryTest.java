@@ -0,0 +1,166 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class ColorHistoryTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void recents_newestFirstWithEvictionAndDedupe() throws Exception {
+        ColorHistory history = new ColorHistory(3);
+        history.addRecent(1);
+        history.addRecent(2);
+        history.addRecent(3);
+        history.addRecent(4);
+        assertRecents(history, 4, 3, 2);
+        assertFalse(history.containsRecent(1));
+
+        // re-picking moves a color to the front instead of duplicating it
+        history.addRecent(2);
+        assertRecents(history, 2, 4, 3);
+        history.addRecent(2);
+        assertRecents(history, 2, 4, 3);
+        history.addRecent(3);
+        history.addRecent(5);
+        assertRecents(history, 5, 3, 2);
+        assertFalse(history.containsRecent(4));
+
+        history.clearRecents();
+        assertEquals(0, history.getRecentCount());
+        assertFalse(history.containsRecent(5));
+    }
+
+    @Test
+    public void favorites_keepOrderAndCapacity() throws Exception {
+        ColorHistory history = new ColorHistory(2);
+        assertTrue(history.addFavorite(0));
+        assertFalse(history.addFavorite(0));
+        assertTrue(history.addFavorite(0xFFFF0000));
+        assertFalse(history.addFavorite(0xFF00FF00));
+        assertTrue(history.isFavorite(0));
+
+        assertTrue(history.removeFavorite(0));
+        assertFalse(history.isFavorite(0));
+        assertEquals(1, history.getFavoriteCount());
+        assertEquals(0xFFFF0000, history.getFavorite(0));
+    }
+
+    @Test
+    public void open_replaysAppendedRecords() throws Exception {
+        File file = File.createTempFile("history", ".bin");
+        file.delete();
+        try {
+            ColorHistory history = ColorHistory.open(file, 4, DIRECT);
+            for (int i = 0; i < 6; i++) {
+                history.addRecent(0xFF000000 | i);
+            }
+            history.addRecent(0xFF000003);
+            history.addFavorite(0xFF123456);
+            history.addFavorite(0xFF654321);
+            history.removeFavorite(0xFF123456);
+
+            ColorHistory reloaded = ColorHistory.open(file, 4, DIRECT);
+            assertRecents(reloaded, 0xFF000003, 0xFF000005, 0xFF000004, 0xFF000002);
+            assertEquals(1, reloaded.getFavoriteCount());
+            assertEquals(0xFF654321, reloaded.getFavorite(0));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void open_compactsLongLogs() throws Exception {
+        File file = File.createTempFile("history", ".bin");
+        file.delete();
+        try {
+            ColorHistory history = ColorHistory.open(file, 8, DIRECT);
+            Random random = new Random(20);
+            for (int i = 0; i < 5000; i++) {
+                history.addRecent(random.nextInt());
+            }
+            // far fewer than 5000 records survive, yet the newest 8 colors are all there
+            assertTrue(file.length() < 1024);
+            ColorHistory reloaded = ColorHistory.open(file, 8, DIRECT);
+            for (int i = 0; i < 8; i++) {
+                assertEquals(history.getRecent(i), reloaded.getRecent(i));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void open_ignoresTruncatedRecordAndReplacesGarbage() throws Exception {
+        File file = File.createTempFile("history", ".bin");
+        file.delete();
+        try {
+            ColorHistory history = ColorHistory.open(file, 4, DIRECT);
+            history.addFavorite(0xFF999999);
+            history.addRecent(0xFF111111);
+            history.addRecent(0xFF222222);
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            randomAccessFile.setLength(randomAccessFile.length() - 2);
+            randomAccessFile.close();
+            history = ColorHistory.open(file, 4, DIRECT);
+            assertRecents(history, 0xFF111111);
+
+            // records appended after the torn one must still line up on the next launch
+            history.addRecent(0xFF333333);
+            history.addRecent(0xFF444444);
+            history = ColorHistory.open(file, 4, DIRECT);
+            assertRecents(history, 0xFF444444, 0xFF333333, 0xFF111111);
+            assertEquals(1, history.getFavoriteCount());
+            assertEquals(0xFF999999, history.getFavorite(0));
+
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            randomAccessFile.setLength(0);
+            randomAccessFile.writeBytes("not a history");
+            randomAccessFile.close();
+            assertEquals(0, ColorHistory.open(file, 4, DIRECT).getRecentCount());
+            assertEquals(0, ColorHistory.open(file, 4, DIRECT).getRecentCount());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void intSet_matchesHashSet() throws Exception {
+        Random random = new Random(5);
+        IntSet set = new IntSet(64);
+        Set<Integer> reference = new HashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            // a small key range forces collisions, long probe runs and removals within them
+            int key = random.nextInt(96) * 0x010101;
+            if (random.nextBoolean() && reference.size() < 64) {
+                assertEquals(reference.add(key), set.add(key));
+            } else {
+                assertEquals(reference.remove(key), set.remove(key));
+            }
+            assertEquals(reference.size(), set.size());
+            int probe = random.nextInt(96) * 0x010101;
+            assertEquals(reference.contains(probe), set.contains(probe));
+        }
+    }
+
+    private static void assertRecents(ColorHistory history, int... expected) {
+        assertEquals(expected.length, history.getRecentCount());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], history.getRecent(i));
+        }
+    }
+}
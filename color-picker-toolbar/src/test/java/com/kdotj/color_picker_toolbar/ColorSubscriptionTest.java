@@ -0,0 +1,176 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ColorSubscriptionTest {
+
+    @Test
+    public void publish_conflatesWhileDeliveryIsQueued() throws Exception {
+        QueueExecutor executor = new QueueExecutor();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        ColorSubscription subscription = new ColorSubscription(subscriber, executor, 0f, null);
+
+        for (int i = 0; i < 100; i++) {
+            subscription.publish(0xFF000000 | i);
+        }
+        assertEquals(1, executor.mQueue.size());
+        executor.runAll();
+
+        assertEquals(1, subscriber.mColors.size());
+        assertEquals(0xFF000063, (int) subscriber.mColors.get(0));
+    }
+
+    @Test
+    public void publish_dropsColorsBelowMinimumDeltaE() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        ColorSubscription subscription = new ColorSubscription(subscriber, null, 0.02f, null);
+
+        subscription.publish(0xFF808080);
+        subscription.publish(0xFF818181);
+        subscription.publish(0x80818181);
+        subscription.publish(0xFFFF0000);
+
+        assertEquals(3, subscriber.mColors.size());
+        assertEquals(0x80818181, (int) subscriber.mColors.get(1));
+        assertEquals(0xFFFF0000, (int) subscriber.mColors.get(2));
+    }
+
+    @Test
+    public void commit_deliversFinalColorThenCommitOnce() throws Exception {
+        QueueExecutor executor = new QueueExecutor();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        ColorSubscription subscription = new ColorSubscription(subscriber, executor, 0.5f, null);
+
+        subscription.publish(0xFF808080);
+        executor.runAll();
+        // below the delta E threshold, but the final color of a gesture is always delivered
+        subscription.publish(0xFF818181);
+        subscription.commit(0xFF828282);
+        executor.runAll();
+
+        assertEquals(2, subscriber.mColors.size());
+        assertEquals(0xFF828282, (int) subscriber.mColors.get(1));
+        assertEquals(1, subscriber.mCommits.size());
+        assertEquals(0xFF828282, (int) subscriber.mCommits.get(0));
+    }
+
+    @Test
+    public void commit_racingDrain_neverCommitsBeforeFinalColor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final List<Integer> events = new ArrayList<>();
+        ColorSubscription subscription = new ColorSubscription(new ColorSubscription.Subscriber() {
+            @Override
+            public void onColor(int color) {
+                events.add(color);
+            }
+
+            @Override
+            public void onGestureCommitted(int color) {
+                // commits are recorded with their alpha cleared to tell them apart
+                events.add(color & 0x00FFFFFF);
+            }
+        }, executor, 0f, null);
+
+        // keeps a drain running on the executor while commit() lands between its reads
+        for (int gesture = 1; gesture <= 20000; gesture++) {
+            subscription.publish(0xFF000000 | gesture << 1);
+            subscription.commit(0xFF000000 | gesture << 1 | 1);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        int lastColor = 0;
+        for (int event : events) {
+            if (event >>> 24 != 0) {
+                lastColor = event;
+            } else {
+                assertEquals("committed before its final color was delivered",
+                        Integer.toHexString(event | 0xFF000000), Integer.toHexString(lastColor));
+            }
+        }
+    }
+
+    @Test
+    public void cancel_stopsDeliveryAndUnregisters() throws Exception {
+        QueueExecutor executor = new QueueExecutor();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        List<ColorSubscription> owner = new CopyOnWriteArrayList<>();
+        ColorSubscription subscription = new ColorSubscription(subscriber, executor, 0f, owner);
+        owner.add(subscription);
+
+        subscription.publish(0xFF123456);
+        subscription.cancel();
+        executor.runAll();
+        subscription.commit(0xFF123456);
+        executor.runAll();
+
+        assertTrue(owner.isEmpty());
+        assertTrue(subscriber.mColors.isEmpty());
+        assertTrue(subscriber.mCommits.isEmpty());
+    }
+
+    @Test
+    public void publish_allocatesNothing() throws Exception {
+        final ColorSubscription subscription = new ColorSubscription(new RecordingSubscriber() {
+            @Override
+            public void onColor(int color) {
+            }
+        }, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        }, 0.01f, null);
+
+        long allocated = AllocationBudget.measure(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10000; i++) {
+                    subscription.publish(0xFF000000 | (i * 97));
+                }
+            }
+        });
+
+        assertTrue("publish allocated " + allocated + " bytes", allocated == 0);
+    }
+
+    private static class RecordingSubscriber implements ColorSubscription.Subscriber {
+        final List<Integer> mColors = new ArrayList<>();
+        final List<Integer> mCommits = new ArrayList<>();
+
+        @Override
+        public void onColor(int color) {
+            mColors.add(color);
+        }
+
+        @Override
+        public void onGestureCommitted(int color) {
+            mCommits.add(color);
+        }
+    }
+
+    private static final class QueueExecutor implements Executor {
+        final List<Runnable> mQueue = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mQueue.add(command);
+        }
+
+        void runAll() {
+            while (!mQueue.isEmpty()) {
+                mQueue.remove(0).run();
+            }
+        }
+    }
+}
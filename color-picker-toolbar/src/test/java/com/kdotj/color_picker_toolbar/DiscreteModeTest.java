@@ -0,0 +1,88 @@
+package com.kdotj.color_picker_toolbar;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that discrete segments are laid across the strip the way they are sized
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DiscreteModeTest {
+
+    private static final int WIDTH = 720;
+    private static final int HEIGHT = 112;
+    private static final int[] COLORS = {0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFFFFFFFF};
+
+    @Test
+    public void equalSegments_haveEqualWidthOnScreen() throws Exception {
+        for (ColorPickerToolbar.IndicatorType indicatorType : ColorPickerToolbar.IndicatorType.values()) {
+            int[] widths = segmentWidths(create(indicatorType));
+
+            int total = 0;
+            for (int width : widths) {
+                total += width;
+            }
+            for (int i = 0; i < widths.length; i++) {
+                assertEquals("segment " + i + ", indicator " + indicatorType,
+                        total / (float) widths.length, widths[i], 1f);
+            }
+        }
+    }
+
+    /**
+     * Touches every pixel column of the view and counts the columns that select each stop
+     */
+    private static int[] segmentWidths(ColorPickerToolbar toolbar) {
+        int[] widths = new int[COLORS.length];
+        int left = -1;
+        int right = -1;
+        for (int x = 0; x < WIDTH; x++) {
+            touch(toolbar, x, HEIGHT / 2);
+            if (toolbar.getIndicatorX() == x) {
+                // columns outside the strip are clamped onto its edge and are not part of it
+                widths[toolbar.getSelectedStopIndex()]++;
+                left = left < 0 ? x : left;
+                right = x;
+            }
+        }
+        assertEquals(right - left + 1, sum(widths));
+        return widths;
+    }
+
+    private static int sum(int[] values) {
+        int sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private static ColorPickerToolbar create(ColorPickerToolbar.IndicatorType indicatorType) {
+        ColorPickerToolbar toolbar = new ColorPickerToolbar(RuntimeEnvironment.application);
+        toolbar.setIndicatorType(indicatorType);
+        toolbar.setColors(COLORS);
+        toolbar.setDiscrete(true);
+        toolbar.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        toolbar.layout(0, 0, WIDTH, HEIGHT);
+        return toolbar;
+    }
+
+    private static void touch(View view, float x, float y) {
+        MotionEvent down = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, x, y, 0);
+        view.dispatchTouchEvent(down);
+        down.recycle();
+        MotionEvent up = MotionEvent.obtain(0, 16, MotionEvent.ACTION_UP, x, y, 0);
+        view.dispatchTouchEvent(up);
+        up.recycle();
+    }
+}
@@ -0,0 +1,92 @@
+package com.kdotj.color_picker_toolbar;
+
+import android.view.MotionEvent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+/**
+ * A touch gesture recorded as time_ms,x,y rows in a test resource: the first row
+ * is the DOWN, the last the UP and everything in between a MOVE
+ */
+final class Gesture {
+
+    final String mName;
+    final long[] mTimes;
+    final float[] mX;
+    final float[] mY;
+
+    private Gesture(String name, long[] times, float[] x, float[] y) {
+        mName = name;
+        mTimes = times;
+        mX = x;
+        mY = y;
+    }
+
+    /**
+     * Reads gestures/&lt;name&gt;.csv from the test classpath
+     */
+    static Gesture load(String name) throws IOException {
+        InputStream in = Gesture.class.getClassLoader().getResourceAsStream("gestures/" + name + ".csv");
+        if (in == null) {
+            throw new IOException("No recorded gesture " + name);
+        }
+        long[] times = new long[256];
+        float[] x = new float[256];
+        float[] y = new float[256];
+        int count = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if (count == times.length) {
+                    times = Arrays.copyOf(times, count * 2);
+                    x = Arrays.copyOf(x, count * 2);
+                    y = Arrays.copyOf(y, count * 2);
+                }
+                times[count] = Long.parseLong(fields[0]);
+                x[count] = Float.parseFloat(fields[1]);
+                y[count] = Float.parseFloat(fields[2]);
+                count++;
+            }
+        } finally {
+            reader.close();
+        }
+        if (count < 2) {
+            throw new IOException("Gesture " + name + " needs at least a DOWN and an UP");
+        }
+        return new Gesture(name, Arrays.copyOf(times, count),
+                Arrays.copyOf(x, count), Arrays.copyOf(y, count));
+    }
+
+    int size() {
+        return mTimes.length;
+    }
+
+    /**
+     * Builds the events up front, so replaying them measures only the view
+     */
+    MotionEvent[] obtainEvents() {
+        MotionEvent[] events = new MotionEvent[size()];
+        long downTime = mTimes[0];
+        for (int i = 0; i < events.length; i++) {
+            int action = i == 0 ? MotionEvent.ACTION_DOWN
+                    : (i == events.length - 1 ? MotionEvent.ACTION_UP : MotionEvent.ACTION_MOVE);
+            events[i] = MotionEvent.obtain(downTime, mTimes[i], action, mX[i], mY[i], 0);
+        }
+        return events;
+    }
+
+    static void recycle(MotionEvent[] events) {
+        for (MotionEvent event : events) {
+            event.recycle();
+        }
+    }
+}
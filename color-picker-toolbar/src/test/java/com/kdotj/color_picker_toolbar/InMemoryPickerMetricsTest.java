@@ -0,0 +1,46 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the default metrics recorder and its histograms
+ */
+public class InMemoryPickerMetricsTest {
+
+    @Test
+    public void histogram_tracksBoundsAndPercentiles() throws Exception {
+        Histogram histogram = new Histogram("test");
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0.001);
+        assertEquals(64, histogram.getPercentile(50));
+        assertEquals(100, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void resolvesPerSecond_closesWindows() throws Exception {
+        InMemoryPickerMetrics metrics = new InMemoryPickerMetrics();
+        long second = 1000000000L;
+
+        // 120 resolves over the first second, then a half second gesture tail of 30
+        for (int i = 0; i < 120; i++) {
+            metrics.onColorResolved(i * second / 120);
+        }
+        for (int i = 0; i < 30; i++) {
+            metrics.onColorResolved(second + i * second / 60);
+        }
+        metrics.onGestureEnd(second + second / 2);
+
+        Histogram rate = metrics.getResolvesPerSecond();
+        assertEquals(2, rate.getCount());
+        assertEquals(60, rate.getMin());
+        assertEquals(120, rate.getMax());
+    }
+}
@@ -0,0 +1,77 @@
+package com.kdotj.color_picker_toolbar;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the pad stays anchored on the strip color, whatever was last picked on the pad
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class PadModeTest {
+
+    private static final int WIDTH = 720;
+    private static final int PAD_HEIGHT = 200;
+    private static final int HEIGHT = 400;
+
+    @Test
+    public void reattach_keepsStripHueAfterBlackPadPick() throws Exception {
+        ColorPickerToolbar toolbar = create(ColorPickerToolbar.PadMode.SATURATION_VALUE);
+        touch(toolbar, WIDTH / 6, 20);
+        touch(toolbar, WIDTH - 20, HEIGHT - 150);
+        int picked = toolbar.getSelectedColor();
+
+        // the bottom row of the pad is black, which has no hue to re-anchor on
+        touch(toolbar, WIDTH / 2, HEIGHT - 1);
+        toolbar.onDetachedFromWindow();
+        toolbar.onAttachedToWindow();
+        touch(toolbar, WIDTH - 20, HEIGHT - 150);
+
+        assertEquals(picked, toolbar.getSelectedColor());
+    }
+
+    @Test
+    public void setPadMode_keepsStripChromaAfterPadPicks() throws Exception {
+        ColorPickerToolbar toolbar = create(ColorPickerToolbar.PadMode.LIGHTNESS);
+        touch(toolbar, WIDTH / 6, 20);
+        touch(toolbar, WIDTH - 20, HEIGHT - 150);
+        int picked = toolbar.getSelectedColor();
+
+        for (int i = 0; i < 4; i++) {
+            touch(toolbar, WIDTH / 2, HEIGHT - 100);
+            toolbar.setPadMode(ColorPickerToolbar.PadMode.SATURATION_VALUE);
+            toolbar.setPadMode(ColorPickerToolbar.PadMode.LIGHTNESS);
+        }
+        touch(toolbar, WIDTH - 20, HEIGHT - 150);
+
+        assertEquals(picked, toolbar.getSelectedColor());
+    }
+
+    private static ColorPickerToolbar create(ColorPickerToolbar.PadMode padMode) {
+        ColorPickerToolbar toolbar = new ColorPickerToolbar(RuntimeEnvironment.application);
+        toolbar.setPadMode(padMode);
+        toolbar.setPadHeight(PAD_HEIGHT);
+        toolbar.onAttachedToWindow();
+        toolbar.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        toolbar.layout(0, 0, WIDTH, HEIGHT);
+        return toolbar;
+    }
+
+    private static void touch(View view, float x, float y) {
+        MotionEvent down = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, x, y, 0);
+        view.dispatchTouchEvent(down);
+        down.recycle();
+        MotionEvent up = MotionEvent.obtain(0, 16, MotionEvent.ACTION_UP, x, y, 0);
+        view.dispatchTouchEvent(up);
+        up.recycle();
+    }
+}
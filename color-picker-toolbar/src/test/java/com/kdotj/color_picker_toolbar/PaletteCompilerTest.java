@@ -0,0 +1,154 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that only the latest palette is published, and only on the main thread
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class PaletteCompilerTest {
+
+    private static final int[] FIRST = {0xFFFF0000, 0xFF00FF00};
+    private static final int[] SECOND = {0xFF000000, 0xFFFFFFFF, 0xFF0000FF};
+
+    @Test
+    public void submit_deliversOnMainThread() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        PaletteCompiler compiler = new PaletteCompiler();
+        compiler.setExecutor(executor);
+        RecordingCallback callback = new RecordingCallback();
+
+        compiler.submit(source(FIRST), InterpolationSpace.SRGB, 100f, 0, 100, callback);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(callback.mPalettes.isEmpty());
+
+        ShadowLooper.runUiThreadTasks();
+        assertEquals(1, callback.mPalettes.size());
+        assertArrayEquals(FIRST, callback.mPalettes.get(0).mColors);
+        assertSame(Thread.currentThread(), callback.mThreads.get(0));
+    }
+
+    @Test
+    public void submit_discardsSupersededPalette() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        QueueExecutor executor = new QueueExecutor();
+        PaletteCompiler compiler = new PaletteCompiler();
+        compiler.setExecutor(executor);
+        RecordingCallback callback = new RecordingCallback();
+
+        compiler.submit(source(FIRST), InterpolationSpace.SRGB, 100f, 0, 100, callback);
+        compiler.submit(source(SECOND), InterpolationSpace.SRGB, 100f, 0, 100, callback);
+        executor.runAll();
+        ShadowLooper.runUiThreadTasks();
+
+        assertEquals(1, callback.mPalettes.size());
+        assertArrayEquals(SECOND, callback.mPalettes.get(0).mColors);
+    }
+
+    @Test
+    public void submit_discardsPaletteCompiledBeforeNewerSubmission() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        QueueExecutor executor = new QueueExecutor();
+        PaletteCompiler compiler = new PaletteCompiler();
+        compiler.setExecutor(executor);
+        RecordingCallback callback = new RecordingCallback();
+
+        // compiled and posted, but superseded before the main thread gets to it
+        compiler.submit(source(FIRST), InterpolationSpace.SRGB, 100f, 0, 100, callback);
+        executor.runAll();
+        compiler.compileNow(SECOND, InterpolationSpace.SRGB, 100f, 0, 100);
+        ShadowLooper.runUiThreadTasks();
+        assertTrue(callback.mPalettes.isEmpty());
+
+        compiler.submit(source(FIRST), InterpolationSpace.SRGB, 100f, 0, 100, callback);
+        executor.runAll();
+        compiler.cancel();
+        ShadowLooper.runUiThreadTasks();
+        assertTrue(callback.mPalettes.isEmpty());
+    }
+
+    @Test
+    public void compile_recordsInterpolationSpaceOfLayer() throws Exception {
+        PaletteCompiler compiler = new PaletteCompiler();
+
+        PaletteCompiler.Compiled palette = compiler.compileNow(FIRST, InterpolationSpace.OKLAB, 100f, 0, 100);
+
+        assertNotNull(palette.mLayer);
+        assertEquals(InterpolationSpace.OKLAB, palette.mSpace);
+        assertEquals(InterpolationSpace.OKLAB, palette.mSampler.getInterpolationSpace());
+    }
+
+    @Test
+    public void toolbar_publishesPaletteCompiledAcrossDetach() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        QueueExecutor executor = new QueueExecutor();
+        ColorPickerToolbar toolbar = new ColorPickerToolbar(RuntimeEnvironment.application);
+        toolbar.setPaletteExecutor(executor);
+        toolbar.onAttachedToWindow();
+        // too many colors to compile synchronously
+        int[] colors = new int[1024];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = 0xFF000000 | i * 0x0101;
+        }
+
+        toolbar.setColors(colors);
+        toolbar.onDetachedFromWindow();
+        executor.runAll();
+        ShadowLooper.runUiThreadTasks();
+        toolbar.onAttachedToWindow();
+
+        assertArrayEquals(colors, toolbar.getColors());
+    }
+
+    private static PaletteCompiler.Source source(final int[] colors) {
+        return new PaletteCompiler.Source() {
+            @Override
+            public int[] load() {
+                return colors;
+            }
+        };
+    }
+
+    private static final class RecordingCallback implements PaletteCompiler.Callback {
+        final List<PaletteCompiler.Compiled> mPalettes = new ArrayList<>();
+        final List<Thread> mThreads = new ArrayList<>();
+
+        @Override
+        public void onPaletteCompiled(PaletteCompiler.Compiled palette) {
+            mPalettes.add(palette);
+            mThreads.add(Thread.currentThread());
+        }
+    }
+
+    private static final class QueueExecutor implements Executor {
+        final List<Runnable> mQueue = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mQueue.add(command);
+        }
+
+        void runAll() {
+            while (!mQueue.isEmpty()) {
+                mQueue.remove(0).run();
+            }
+        }
+    }
+}
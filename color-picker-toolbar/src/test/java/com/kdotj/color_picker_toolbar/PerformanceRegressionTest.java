@@ -0,0 +1,209 @@
+package com.kdotj.color_picker_toolbar;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays recorded gestures through {@link ColorPickerToolbar#onTouchEvent(MotionEvent)}
+ * and checks invalidations, callbacks, allocations and CPU time against the budgets
+ * checked in as perf-budgets.properties
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class PerformanceRegressionTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 168;
+
+    private static final String[] GESTURES = {"sweep", "scrub", "hold"};
+
+    /**
+     * Replays measured per gesture; allocations are taken from the quietest one, so a
+     * single JIT deoptimization cannot fail the build
+     */
+    private static final int ROUNDS = 5;
+
+    /**
+     * Passes over a toolbar-wide row in the calibration loop, a few milliseconds of work
+     */
+    private static final int CALIBRATION_PASSES = 2000;
+
+    /**
+     * Keeps the calibration loop from being optimized away
+     */
+    private static int sCalibrationSink;
+
+    @Test
+    public void continuousGestures_withinBudgets() throws Exception {
+        checkGestures(false);
+    }
+
+    @Test
+    public void discreteGestures_withinBudgets() throws Exception {
+        checkGestures(true);
+    }
+
+    private void checkGestures(boolean discrete) throws Exception {
+        Properties budgets = loadBudgets();
+        boolean print = Boolean.getBoolean("perf.print");
+        StringBuilder failures = new StringBuilder();
+        for (String name : GESTURES) {
+            Gesture gesture = Gesture.load(name);
+            String prefix = discrete ? name + ".discrete" : name;
+
+            // the first replay warms up class loading and the JIT and is not measured
+            replay(gesture, discrete);
+            Result result = replay(gesture, discrete);
+            for (int i = 1; i < ROUNDS; i++) {
+                Result next = replay(gesture, discrete);
+                result.mAllocatedBytes = Math.min(result.mAllocatedBytes, next.mAllocatedBytes);
+                result.mCpuNanos = Math.min(result.mCpuNanos, next.mCpuNanos);
+            }
+            // timed right next to the replays, so a slow or busy machine slows both alike
+            result.mCalibrationNanos = calibrate();
+            if (print) {
+                System.out.println(prefix + ": " + result);
+            }
+
+            check(budgets, prefix + ".invalidations", result.mInvalidations, failures);
+            check(budgets, prefix + ".callbacks", result.mCallbacks, failures);
+            check(budgets, prefix + ".allocatedBytes", result.mAllocatedBytes, failures);
+            check(budgets, prefix + ".cpuPercent", result.cpuPercent(), failures);
+        }
+        assertTrue(failures.toString(), failures.length() == 0);
+    }
+
+    private static Result replay(Gesture gesture, boolean discrete) {
+        ColorPickerToolbar toolbar = new ColorPickerToolbar(RuntimeEnvironment.application);
+        toolbar.setIndicatorType(ColorPickerToolbar.IndicatorType.CIRCLE);
+        toolbar.setDiscrete(discrete);
+        toolbar.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        toolbar.layout(0, 0, WIDTH, HEIGHT);
+
+        final Result result = new Result();
+        toolbar.addColorChangeListener(new ColorPickerToolbar.ColorChangeListener() {
+            @Override
+            public void onColorChanged(int color) {
+                result.mCallbacks++;
+            }
+        });
+        toolbar.setMetrics(new PickerMetrics() {
+            @Override
+            public void onTouchToCallbackLatency(long latencyNanos) {
+            }
+
+            @Override
+            public void onDrawDuration(long durationNanos) {
+            }
+
+            @Override
+            public void onGestureInvalidations(int invalidations) {
+                result.mInvalidations += invalidations;
+            }
+
+            @Override
+            public void onColorResolved(long timestampNanos) {
+            }
+
+            @Override
+            public void onGestureEnd(long timestampNanos) {
+            }
+        });
+
+        MotionEvent[] events = gesture.obtainEvents();
+        long allocatedBefore = AllocationBudget.allocatedBytes();
+        long cpuBefore = AllocationBudget.cpuNanos();
+        for (MotionEvent event : events) {
+            toolbar.onTouchEvent(event);
+        }
+        result.mCpuNanos = AllocationBudget.cpuNanos() - cpuBefore;
+        result.mAllocatedBytes = AllocationBudget.allocatedBytes() - allocatedBefore;
+        Gesture.recycle(events);
+        return result;
+    }
+
+    /**
+     * @return the least CPU time of several runs of a fixed loop of integer color blending
+     */
+    private static long calibrate() {
+        int[] row = new int[WIDTH];
+        long least = Long.MAX_VALUE;
+        // the first run warms up the JIT and is not measured
+        for (int round = 0; round <= ROUNDS; round++) {
+            long before = AllocationBudget.cpuNanos();
+            for (int pass = 0; pass < CALIBRATION_PASSES; pass++) {
+                for (int x = 0; x < row.length; x++) {
+                    int color = row[x] ^ (x * 0x010101 + pass);
+                    row[x] = (color & 0xFEFEFE) + (row[(x + 1) % row.length] & 0xFEFEFE) >>> 1;
+                }
+            }
+            if (round > 0) {
+                least = Math.min(least, AllocationBudget.cpuNanos() - before);
+            }
+        }
+        sCalibrationSink += row[0];
+        return Math.max(least, 1L);
+    }
+
+    private static void check(Properties budgets, String key, long value, StringBuilder failures) {
+        String budget = budgets.getProperty(key);
+        if (budget == null) {
+            failures.append("\nNo budget for ").append(key);
+        } else if (value > Long.parseLong(budget.trim())) {
+            failures.append("\n").append(key).append(" = ").append(value)
+                    .append(", budget ").append(budget.trim());
+        }
+    }
+
+    private static Properties loadBudgets() throws IOException {
+        InputStream in = PerformanceRegressionTest.class.getClassLoader()
+                .getResourceAsStream("perf-budgets.properties");
+        if (in == null) {
+            throw new IOException("perf-budgets.properties is missing from the test resources");
+        }
+        try {
+            Properties budgets = new Properties();
+            budgets.load(in);
+            return budgets;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static final class Result {
+        long mInvalidations;
+        long mCallbacks;
+        long mAllocatedBytes;
+        long mCpuNanos;
+        long mCalibrationNanos;
+
+        /**
+         * @return CPU time of the replay as a percentage of the calibration loop's
+         */
+        long cpuPercent() {
+            return mCpuNanos * 100L / mCalibrationNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "invalidations=" + mInvalidations
+                    + ", callbacks=" + mCallbacks
+                    + ", allocatedBytes=" + mAllocatedBytes
+                    + ", cpuPercent=" + cpuPercent()
+                    + " (" + mCpuNanos / 1000L + "us vs " + mCalibrationNanos / 1000L + "us calibration)";
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.kdotj.color_picker_toolbar;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the hardware and software rendering paths draw the same pixels and pick the same colors
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class RenderModeTest {
+
+    private static final int WIDTH = 720;
+    private static final int HEIGHT = 112;
+
+    @Test
+    public void renderModes_setLayerType() throws Exception {
+        assertEquals(View.LAYER_TYPE_NONE, create(ColorPickerToolbar.RenderMode.HARDWARE).getLayerType());
+        assertEquals(View.LAYER_TYPE_SOFTWARE, create(ColorPickerToolbar.RenderMode.SOFTWARE).getLayerType());
+    }
+
+    @Test
+    public void renderModes_selectIdenticalColors() throws Exception {
+        for (ColorPickerToolbar.IndicatorType indicatorType : ColorPickerToolbar.IndicatorType.values()) {
+            ColorPickerToolbar hardware = create(ColorPickerToolbar.RenderMode.HARDWARE);
+            ColorPickerToolbar software = create(ColorPickerToolbar.RenderMode.SOFTWARE);
+            hardware.setIndicatorType(indicatorType);
+            software.setIndicatorType(indicatorType);
+            layout(hardware);
+            layout(software);
+
+            for (int y = -8; y <= HEIGHT + 8; y += 24) {
+                for (int x = -8; x <= WIDTH + 8; x += 5) {
+                    touch(hardware, x, y);
+                    touch(software, x, y);
+                    assertEquals(hardware.getSelectedColor(), software.getSelectedColor());
+                    assertEquals(hardware.getIndicatorX(), software.getIndicatorX(), 0f);
+                    assertEquals(hardware.getIndicatorY(), software.getIndicatorY(), 0f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void renderModes_drawIdenticalPixels() throws Exception {
+        for (ColorPickerToolbar.IndicatorType indicatorType : ColorPickerToolbar.IndicatorType.values()) {
+            ColorPickerToolbar hardware = create(ColorPickerToolbar.RenderMode.HARDWARE);
+            ColorPickerToolbar software = create(ColorPickerToolbar.RenderMode.SOFTWARE);
+            hardware.setIndicatorType(indicatorType);
+            software.setIndicatorType(indicatorType);
+            layout(hardware);
+            layout(software);
+
+            for (int x = -8; x <= WIDTH + 8; x += 97) {
+                touch(hardware, x, HEIGHT / 2);
+                touch(software, x, HEIGHT / 2);
+                RasterCanvas hardwarePixels = new RasterCanvas();
+                RasterCanvas softwarePixels = new RasterCanvas();
+                hardware.onDraw(hardwarePixels);
+                software.onDraw(softwarePixels);
+
+                assertArrayEquals("indicator " + indicatorType + " at " + x,
+                        hardwarePixels.mPixels, softwarePixels.mPixels);
+            }
+        }
+    }
+
+    private static ColorPickerToolbar create(ColorPickerToolbar.RenderMode renderMode) {
+        ColorPickerToolbar toolbar = new ColorPickerToolbar(RuntimeEnvironment.application);
+        toolbar.setRenderMode(renderMode);
+        return toolbar;
+    }
+
+    private static void layout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Rasterizes the few operations the Toolbar draws with into an ARGB pixel array, without
+     * antialiasing or blending, so two drawings can be compared pixel by pixel
+     */
+    private static final class RasterCanvas extends Canvas {
+        final int[] mPixels = new int[WIDTH * HEIGHT];
+
+        @Override
+        public void drawRect(Rect r, Paint paint) {
+            drawRect(r.left, r.top, r.right, r.bottom, paint);
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+            for (int y = Math.max(0, (int) top); y < Math.min(HEIGHT, (int) bottom); y++) {
+                for (int x = Math.max(0, (int) left); x < Math.min(WIDTH, (int) right); x++) {
+                    mPixels[y * WIDTH + x] = paint.getColor();
+                }
+            }
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius, Paint paint) {
+            float outer = paint.getStyle() == Paint.Style.FILL ? radius : radius + paint.getStrokeWidth() / 2f;
+            float inner = paint.getStyle() == Paint.Style.STROKE ? radius - paint.getStrokeWidth() / 2f : 0f;
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    float dx = x + 0.5f - cx;
+                    float dy = y + 0.5f - cy;
+                    float distance = (float) Math.sqrt(dx * dx + dy * dy);
+                    if (distance <= outer && distance >= inner) {
+                        mPixels[y * WIDTH + x] = paint.getColor();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+            for (int y = Math.max(0, dst.top); y < Math.min(HEIGHT, dst.bottom); y++) {
+                for (int x = Math.max(0, dst.left); x < Math.min(WIDTH, dst.right); x++) {
+                    int sx = src.left + (x - dst.left) * src.width() / dst.width();
+                    int sy = src.top + (y - dst.top) * src.height() / dst.height();
+                    mPixels[y * WIDTH + x] = bitmap.getPixel(sx, sy);
+                }
+            }
+        }
+    }
+
+    private static void touch(View view, float x, float y) {
+        MotionEvent down = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, x, y, 0);
+        view.dispatchTouchEvent(down);
+        down.recycle();
+        MotionEvent up = MotionEvent.obtain(0, 16, MotionEvent.ACTION_UP, x, y, 0);
+        view.dispatchTouchEvent(up);
+        up.recycle();
+    }
+}
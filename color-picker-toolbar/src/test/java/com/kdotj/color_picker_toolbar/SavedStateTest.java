@@ -0,0 +1,135 @@
+package com.kdotj.color_picker_toolbar;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a selection survives a save and restore, before and after layout
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class SavedStateTest {
+
+    private static final int WIDTH = 720;
+    private static final int HEIGHT = 112;
+
+    private static final int[] PALETTE = {0xFFFF0000, 0xFFFFFF00, 0xFF00FF00, 0xFF0000FF};
+    private static final int[] OTHER_PALETTE = {0xFF000000, 0xFFFFFFFF};
+
+    @Test
+    public void restore_beforeLayoutResolvesColorAndNotifiesOnce() throws Exception {
+        ColorPickerToolbar saved = create(PALETTE);
+        layout(saved);
+        touch(saved, 301, 60);
+        Parcelable state = parcel(saved.onSaveInstanceState());
+
+        ColorPickerToolbar restored = create(PALETTE);
+        List<Integer> colors = listen(restored);
+        restored.onRestoreInstanceState(state);
+
+        assertEquals(1, colors.size());
+        assertSameColor(saved.getSelectedColor(), colors.get(0));
+        assertSameColor(saved.getSelectedColor(), restored.getSelectedColor());
+
+        layout(restored);
+        assertEquals(saved.getIndicatorX(), restored.getIndicatorX(), 1f);
+        assertEquals(saved.getIndicatorY(), restored.getIndicatorY(), 0f);
+        assertEquals(1, colors.size());
+    }
+
+    @Test
+    public void restore_waitsForMatchingPalette() throws Exception {
+        ColorPickerToolbar saved = create(PALETTE);
+        layout(saved);
+        touch(saved, 500, 200);
+        Parcelable state = saved.onSaveInstanceState();
+
+        ColorPickerToolbar restored = create(OTHER_PALETTE);
+        List<Integer> colors = listen(restored);
+        restored.onRestoreInstanceState(state);
+        assertTrue(colors.isEmpty());
+
+        restored.setColors(PALETTE);
+        assertEquals(1, colors.size());
+        assertSameColor(saved.getSelectedColor(), restored.getSelectedColor());
+        assertEquals(0xFF, restored.getSelectedColor() >>> 24);
+    }
+
+    @Test
+    public void restore_withoutSelectionLeavesPickerUntouched() throws Exception {
+        ColorPickerToolbar saved = create(PALETTE);
+        layout(saved);
+        Parcelable state = parcel(saved.onSaveInstanceState());
+
+        ColorPickerToolbar restored = create(PALETTE);
+        List<Integer> colors = listen(restored);
+        restored.onRestoreInstanceState(state);
+        assertTrue(colors.isEmpty());
+    }
+
+    private static ColorPickerToolbar create(int[] palette) {
+        ColorPickerToolbar toolbar = new ColorPickerToolbar(RuntimeEnvironment.application);
+        toolbar.setColors(palette);
+        return toolbar;
+    }
+
+    private static List<Integer> listen(ColorPickerToolbar toolbar) {
+        final List<Integer> colors = new ArrayList<>();
+        toolbar.addColorChangeListener(new ColorPickerToolbar.ColorChangeListener() {
+            @Override
+            public void onColorChanged(int color) {
+                colors.add(color);
+            }
+        });
+        return colors;
+    }
+
+    /**
+     * Colors resolved from a fraction may differ from the touched pixel by rounding
+     */
+    private static void assertSameColor(int expected, int actual) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            assertEquals(Integer.toHexString(expected) + " vs " + Integer.toHexString(actual),
+                    (expected >>> shift) & 0xFF, (actual >>> shift) & 0xFF, 1);
+        }
+    }
+
+    private static Parcelable parcel(Parcelable state) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            state.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return ColorPickerToolbar.SavedState.CREATOR.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static void layout(View view) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static void touch(View view, float x, float y) {
+        MotionEvent down = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, x, y, 0);
+        view.dispatchTouchEvent(down);
+        down.recycle();
+        MotionEvent up = MotionEvent.obtain(0, 16, MotionEvent.ACTION_UP, x, y, 0);
+        view.dispatchTouchEvent(up);
+        up.recycle();
+    }
+}
@@ -0,0 +1,27 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Snapping to a swatch runs on every touch event, so a lookup must not allocate
+ */
+public class SwatchIndexAllocationTest {
+
+    @Test
+    public void nearest_allocatesNothing() throws Exception {
+        final SwatchIndex index = new SwatchIndex(new int[]{0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFF808080});
+
+        long allocated = AllocationBudget.measure(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10000; i++) {
+                    index.nearest(i * 0x3F1);
+                }
+            }
+        });
+
+        assertEquals(0, allocated);
+    }
+}
@@ -0,0 +1,108 @@
+package com.kdotj.color_picker_toolbar;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Steady-state touch handling and drawing of the view itself must not allocate
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ToolbarAllocationTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 168;
+    private static final int FRAMES = 1000;
+    private static final long BUDGET_BYTES = 0;
+
+    @Test
+    public void onTouchEvent_allocatesNothing() throws Exception {
+        for (boolean discrete : new boolean[]{false, true}) {
+            final ColorPickerToolbar toolbar = create(ColorPickerToolbar.IndicatorType.CIRCLE);
+            toolbar.setDiscrete(discrete);
+            toolbar.addColorChangeListener(new ColorPickerToolbar.ColorChangeListener() {
+                @Override
+                public void onColorChanged(int color) {
+                }
+            });
+            final MotionEvent[] events = Gesture.load("scrub").obtainEvents();
+
+            long allocated = AllocationBudget.measure(new Runnable() {
+                @Override
+                public void run() {
+                    for (MotionEvent event : events) {
+                        toolbar.onTouchEvent(event);
+                    }
+                }
+            });
+            Gesture.recycle(events);
+
+            assertTrue("onTouchEvent allocated " + allocated + " bytes, discrete " + discrete,
+                    allocated <= BUDGET_BYTES);
+        }
+    }
+
+    @Test
+    public void onDraw_allocatesNothing() throws Exception {
+        final Canvas canvas = new NullCanvas();
+        for (ColorPickerToolbar.IndicatorType indicatorType : ColorPickerToolbar.IndicatorType.values()) {
+            final ColorPickerToolbar toolbar = create(indicatorType);
+
+            long allocated = AllocationBudget.measure(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < FRAMES; i++) {
+                        toolbar.setIndicatorX(i % WIDTH);
+                        toolbar.onDraw(canvas);
+                    }
+                }
+            });
+
+            assertTrue("onDraw allocated " + allocated + " bytes, indicator " + indicatorType,
+                    allocated <= BUDGET_BYTES);
+        }
+    }
+
+    private static ColorPickerToolbar create(ColorPickerToolbar.IndicatorType indicatorType) {
+        ColorPickerToolbar toolbar = new ColorPickerToolbar(RuntimeEnvironment.application);
+        toolbar.setIndicatorType(indicatorType);
+        toolbar.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        toolbar.layout(0, 0, WIDTH, HEIGHT);
+        return toolbar;
+    }
+
+    /**
+     * Discards everything drawn, so only the view's own allocations are measured
+     */
+    private static final class NullCanvas extends Canvas {
+
+        @Override
+        public void drawRect(Rect r, Paint paint) {
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        }
+
+        @Override
+        public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Steady-state dragging must not allocate: every MOVE goes through these paths
+ */
+public class TouchPathAllocationTest {
+
+    private static final int MOVES = 10000;
+    private static final long BUDGET_BYTES = 0;
+
+    private static final int[] COLORS = {
+            0xFF000000, 0xFFFF0000, 0xFFFFA500, 0xFFFFFF00, 0xFF00FF00,
+            0xFF00FFFF, 0xFF0000FF, 0xFF4B0082, 0xFFEE82EE, 0xFFFFFFFF
+    };
+
+    @Test
+    public void resolve_allocatesNothing() throws Exception {
+        final ColorSelection selection = new ColorSelection(new GradientSampler(COLORS, 1080f));
+        selection.setBounds(24, 24, 1056, 144);
+        selection.setMinimumAlpha(40);
+
+        long allocated = AllocationBudget.measure(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < MOVES; i++) {
+                    // sweep past both edges so every clamp branch is taken
+                    selection.resolve(i % 1200 - 60, i % 200 - 20);
+                }
+            }
+        });
+
+        assertTrue("resolve allocated " + allocated + " bytes", allocated <= BUDGET_BYTES);
+    }
+
+    @Test
+    public void sample_allocatesNothing() throws Exception {
+        final GradientSampler sampler = new GradientSampler(COLORS, 1080f);
+
+        long allocated = AllocationBudget.measure(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < MOVES; i++) {
+                    sampler.sampleAtPixel(i % 2160);
+                }
+            }
+        });
+
+        assertTrue("sample allocated " + allocated + " bytes", allocated <= BUDGET_BYTES);
+    }
+}
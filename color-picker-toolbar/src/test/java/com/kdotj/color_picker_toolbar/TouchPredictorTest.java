@@ -0,0 +1,79 @@
+package com.kdotj.color_picker_toolbar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TouchPredictorTest {
+
+    @Test
+    public void predict_extrapolatesConstantVelocity() throws Exception {
+        TouchPredictor predictor = new TouchPredictor();
+        for (int i = 0; i < 20; i++) {
+            predictor.addSample(1000 + i * 8, 100 + i * 12f, 50 - i * 2f);
+        }
+
+        assertTrue(predictor.predict(1152 + 16));
+        assertEquals(1.5f, predictor.getVelocityX(), 1e-4f);
+        assertEquals(-0.25f, predictor.getVelocityY(), 1e-4f);
+        assertEquals(328f + 24f, predictor.getPredictedX(), 1e-2f);
+        assertEquals(12f - 4f, predictor.getPredictedY(), 1e-2f);
+    }
+
+    @Test
+    public void predict_capsLookahead() throws Exception {
+        TouchPredictor predictor = new TouchPredictor();
+        predictor.addSample(0, 0f, 0f);
+        predictor.addSample(10, 10f, 0f);
+
+        assertTrue(predictor.predict(10 + TouchPredictor.MAX_LOOKAHEAD_MILLIS + 5));
+        assertEquals(10f + TouchPredictor.MAX_LOOKAHEAD_MILLIS, predictor.getPredictedX(), 1e-3f);
+    }
+
+    @Test
+    public void predict_holdsPositionWhenStaleOrSingle() throws Exception {
+        TouchPredictor predictor = new TouchPredictor();
+        assertFalse(predictor.predict(0));
+
+        predictor.addSample(0, 40f, 60f);
+        assertTrue(predictor.predict(16));
+        assertEquals(40f, predictor.getPredictedX(), 0f);
+        assertEquals(60f, predictor.getPredictedY(), 0f);
+
+        predictor.addSample(8, 48f, 60f);
+        assertTrue(predictor.predict(8 + 100));
+        assertEquals(48f, predictor.getPredictedX(), 0f);
+
+        predictor.reset();
+        assertFalse(predictor.predict(200));
+    }
+
+    @Test
+    public void isStale_onceSamplesStop() throws Exception {
+        TouchPredictor predictor = new TouchPredictor();
+        assertTrue(predictor.isStale(0));
+
+        predictor.addSample(100, 0f, 0f);
+        predictor.addSample(108, 8f, 0f);
+        assertFalse(predictor.isStale(108));
+        assertFalse(predictor.isStale(148));
+        assertTrue(predictor.isStale(149));
+
+        predictor.reset();
+        assertTrue(predictor.isStale(108));
+    }
+
+    @Test
+    public void predict_ignoresSamplesBeyondHorizon() throws Exception {
+        TouchPredictor predictor = new TouchPredictor();
+        // a fast flick long ago, then a slow drag
+        predictor.addSample(0, 0f, 0f);
+        predictor.addSample(8, 400f, 0f);
+        for (int i = 0; i < 4; i++) {
+            predictor.addSample(200 + i * 10, 500f + i, 0f);
+        }
+
+        assertTrue(predictor.predict(230 + 10));
+        assertEquals(0.1f, predictor.getVelocityX(), 1e-4f);
+    }
+}